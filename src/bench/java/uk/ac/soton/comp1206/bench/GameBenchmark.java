@@ -0,0 +1,66 @@
+package uk.ac.soton.comp1206.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.game.GameCore;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks a whole game move: find where the current piece can go, place it, clear lines and score. A simple bot
+ * plays the first legal position it finds, and a new game is started whenever one ends.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+
+    @Param({"5", "8", "12"})
+    public int size;
+
+    @Param({"UNIFORM", "BAG"})
+    public PieceMix mix;
+
+    private GameCore core;
+    private long[] legal;
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        legal = new long[(size * size + 63) >>> 6];
+        newGame();
+    }
+
+    private void newGame() {
+        core = new GameCore(size, size, 0, 3, mix.create(seed++));
+    }
+
+    @Benchmark
+    public GameCore.Step move() {
+        if (core.isOver()) {
+            newGame();
+        }
+        core.getGrid().legalPlacements(core.getCurrentPiece(), legal);
+        for (int w = 0; w < legal.length; w++) {
+            if (legal[w] != 0) {
+                int cell = (w << 6) + Long.numberOfTrailingZeros(legal[w]);
+                return core.place(cell % size, cell / size);
+            }
+        }
+        return core.timeout();
+    }
+
+}
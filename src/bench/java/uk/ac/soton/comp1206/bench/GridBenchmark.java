@@ -0,0 +1,115 @@
+package uk.ac.soton.comp1206.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.game.ClearResult;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for checking, playing and clearing pieces on a grid that is partly filled
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GridBenchmark {
+
+    /**
+     * Number of positions cycled through, so the branch predictor can't learn them
+     */
+    private static final int POSITIONS = 1024;
+
+    @Param({"5", "8", "12"})
+    public int size;
+
+    @Param({"0.3", "0.6"})
+    public double fill;
+
+    @Param({"UNIFORM", "BAG"})
+    public PieceMix mix;
+
+    private Grid base;
+    private Grid scratch;
+    private GamePiece[] pieces;
+    private int[] xs;
+    private int[] ys;
+    private long[] legal;
+    private final ClearResult clear = new ClearResult();
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var random = new SplittableRandom(1206);
+        base = new Grid(size, size);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (random.nextDouble() < fill) {
+                    base.set(x, y, 1 + random.nextInt(15));
+                }
+            }
+        }
+        scratch = base.copy();
+        pieces = mix.deal(1206, POSITIONS);
+        xs = new int[POSITIONS];
+        ys = new int[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            xs[i] = random.nextInt(size);
+            ys[i] = random.nextInt(size);
+        }
+        legal = new long[(size * size + 63) >>> 6];
+    }
+
+    @Benchmark
+    public boolean canPlayPiece() {
+        int i = next++ & (POSITIONS - 1);
+        return base.canPlayPiece(pieces[i], xs[i], ys[i]);
+    }
+
+    @Benchmark
+    public int playPiece() {
+        int i = next++ & (POSITIONS - 1);
+        scratch.copyFrom(base);
+        if (scratch.canPlayPiece(pieces[i], xs[i], ys[i])) {
+            scratch.playPiece(pieces[i], xs[i], ys[i]);
+        }
+        return scratch.getFilledCount();
+    }
+
+    /**
+     * Play a piece and clear the lines it completes, the work done after every placement
+     */
+    @Benchmark
+    public int afterPiece() {
+        int i = next++ & (POSITIONS - 1);
+        scratch.copyFrom(base);
+        if (!scratch.canPlayPiece(pieces[i], xs[i], ys[i])) {
+            return 0;
+        }
+        scratch.playPiece(pieces[i], xs[i], ys[i]);
+        return scratch.clearLines(pieces[i], xs[i], ys[i], clear);
+    }
+
+    @Benchmark
+    public long[] legalPlacements() {
+        int i = next++ & (POSITIONS - 1);
+        base.legalPlacements(pieces[i], legal);
+        return legal;
+    }
+
+}
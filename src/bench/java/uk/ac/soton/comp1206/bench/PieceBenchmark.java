@@ -0,0 +1,72 @@
+package uk.ac.soton.comp1206.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.game.GameCore;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for creating, rotating and dealing pieces
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PieceBenchmark {
+
+    /**
+     * Number of piece and rotation pairs cycled through, enough to cover every one
+     */
+    private static final int SHAPES = 64;
+
+    @Param({"UNIFORM", "BAG"})
+    public PieceMix mix;
+
+    private GameCore core;
+    private GamePiece piece;
+    private final int[] numbers = new int[SHAPES];
+    private final int[] rotations = new int[SHAPES];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        core = new GameCore(5, 5, 0, 3, mix.create(1206));
+        piece = GamePiece.createPiece(0);
+        for (int i = 0; i < SHAPES; i++) {
+            numbers[i] = i % GamePiece.PIECES;
+            rotations[i] = i / GamePiece.PIECES % GamePiece.ROTATIONS;
+        }
+    }
+
+    @Benchmark
+    public GamePiece createPiece() {
+        next = (next + 1) & (SHAPES - 1);
+        return GamePiece.createPiece(numbers[next], rotations[next]);
+    }
+
+    @Benchmark
+    public GamePiece rotate() {
+        piece = piece.rotate();
+        return piece;
+    }
+
+    @Benchmark
+    public GamePiece spawnPiece() {
+        return core.spawnPiece();
+    }
+
+}
@@ -0,0 +1,46 @@
+package uk.ac.soton.comp1206.bench;
+
+import uk.ac.soton.comp1206.game.BagPieceSource;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PieceSource;
+import uk.ac.soton.comp1206.game.UniformPieceSource;
+
+/**
+ * The ways pieces can be dealt, used as a benchmark parameter
+ */
+public enum PieceMix {
+    /**
+     * Every piece is equally likely each time
+     */
+    UNIFORM,
+    /**
+     * Every piece is dealt once from a shuffled bag before any repeats
+     */
+    BAG;
+
+    /**
+     * Create a source dealing pieces this way
+     *
+     * @param seed the seed
+     * @return the piece source
+     */
+    public PieceSource create(long seed) {
+        return this == UNIFORM ? new UniformPieceSource(seed, 3) : new BagPieceSource(seed, 3);
+    }
+
+    /**
+     * Deal a fixed sequence of pieces, each in a random rotation
+     *
+     * @param seed  the seed
+     * @param count number of pieces
+     * @return the pieces
+     */
+    public GamePiece[] deal(long seed, int count) {
+        var source = create(seed);
+        var pieces = new GamePiece[count];
+        for (int i = 0; i < count; i++) {
+            pieces[i] = source.next().rotate(i);
+        }
+        return pieces;
+    }
+}
@@ -0,0 +1,84 @@
+package uk.ac.soton.comp1206.bench;
+
+import javafx.util.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.utils.ScoreStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks opening a score store and saving a score to it. The stores are kept in temporary folders, so the
+ * player's own scores are left alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoresBenchmark {
+
+    @Param({"10", "10000"})
+    public int count;
+
+    private Path loadFolder;
+    private Path saveFolder;
+    private ScoreStore store;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        loadFolder = Files.createTempDirectory("tetrecs-scores");
+        try (var seed = new ScoreStore(loadFolder)) {
+            for (int i = 0; i < count; i++) {
+                seed.add("Player" + i, i * 10);
+            }
+        }
+        saveFolder = Files.createTempDirectory("tetrecs-scores");
+        store = new ScoreStore(saveFolder);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        delete(loadFolder);
+        delete(saveFolder);
+    }
+
+    @Benchmark
+    public List<Pair<String, Integer>> loadScores() throws IOException {
+        try (var opened = new ScoreStore(loadFolder)) {
+            return opened.getScores();
+        }
+    }
+
+    @Benchmark
+    public void saveScore() {
+        store.add("Player", 1000);
+    }
+
+    private static void delete(Path folder) throws IOException {
+        try (var files = Files.walk(folder)) {
+            for (var file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+}
@@ -7,6 +7,9 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import uk.ac.soton.comp1206.ui.GameWindow;
+import uk.ac.soton.comp1206.utils.Music;
+import uk.ac.soton.comp1206.utils.ScoreStore;
+import uk.ac.soton.comp1206.utils.SoundEffects;
 
 /**
  * JavaFX Application class
@@ -45,6 +48,10 @@ public class App extends Application {
         instance = this;
         this.stage = stage;
 
+        //Load the sound effects up front so the first of each plays straight away
+        SoundEffects.preload();
+        Music.preload("menu.mp3", "end.wav");
+
         //Open game window
         openGame();
     }
@@ -67,9 +74,22 @@ public class App extends Application {
      */
     public void shutdown() {
         logger.info("Shutting down");
+        SoundEffects.dispose();
+        Music.dispose();
+        ScoreStore.closeDefault();
         System.exit(0);
     }
 
+    /**
+     * Called by JavaFX when the window is closed
+     */
+    @Override
+    public void stop() {
+        SoundEffects.dispose();
+        Music.dispose();
+        ScoreStore.closeDefault();
+    }
+
     /**
      * Get the singleton App instance
      * @return the app
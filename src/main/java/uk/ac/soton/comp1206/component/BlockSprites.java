@@ -0,0 +1,103 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.scene.Node;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.transform.Transform;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.HashMap;
+
+/**
+ * Pictures of every kind of block, drawn once and then copied onto the screen, so painting a block is a single
+ * drawImage instead of a dozen fills and strokes.
+ * <p>
+ * There is a picture for each value and hover state, at each block size, rendered at the output scale of the window so
+ * it stays sharp. The pictures are thrown away when the scale changes. Only used on the JavaFX thread.
+ */
+final class BlockSprites {
+
+    private static final Logger logger = LogManager.getLogger(BlockSprites.class);
+
+    /**
+     * The pictures for one block size, indexed by value * 2 + hover
+     */
+    private record Size(double width, double height) {
+    }
+
+    private static final HashMap<Size, WritableImage[]> sheets = new HashMap<>();
+
+    /**
+     * The scale the pictures were rendered at
+     */
+    private static double scale = 1;
+
+    //The last size looked up, as blocks of one board all share a size
+    private static double lastWidth = -1;
+    private static double lastHeight = -1;
+    private static WritableImage[] lastSheet;
+
+    private BlockSprites() {
+    }
+
+    /**
+     * Get the picture of a block, rendering it the first time it is asked for
+     *
+     * @param value  the value of the block
+     * @param hover  whether it is hovered
+     * @param width  the width of the block
+     * @param height the height of the block
+     * @param scale  the output scale of the window
+     * @return the picture, to be drawn at the block's width and height
+     */
+    static WritableImage get(int value, boolean hover, double width, double height, double scale) {
+        if (scale != BlockSprites.scale) {
+            logger.info("Output scale changed to {}, dropping block sprites", scale);
+            sheets.clear();
+            lastSheet = null;
+            BlockSprites.scale = scale;
+        }
+        if (lastSheet == null || width != lastWidth || height != lastHeight) {
+            lastSheet = sheets.computeIfAbsent(new Size(width, height),
+                    size -> new WritableImage[GameBlock.COLOURS.length * 2]);
+            lastWidth = width;
+            lastHeight = height;
+        }
+
+        int slot = value * 2 + (hover ? 1 : 0);
+        var sprite = lastSheet[slot];
+        if (sprite == null) {
+            sprite = render(value, hover, width, height, scale);
+            lastSheet[slot] = sprite;
+        }
+        return sprite;
+    }
+
+    /**
+     * Get the output scale of the window a node is showing in
+     *
+     * @param node the node
+     * @return the scale, or 1 if it isn't showing
+     */
+    static double scaleOf(Node node) {
+        var scene = node.getScene();
+        if (scene == null || scene.getWindow() == null) {
+            return 1;
+        }
+        return scene.getWindow().getOutputScaleX();
+    }
+
+    private static WritableImage render(int value, boolean hover, double width, double height, double scale) {
+        var canvas = new Canvas(width, height);
+        GameBlock.drawShapes(canvas.getGraphicsContext2D(), 0, 0, width, height, value, hover);
+
+        var parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        parameters.setTransform(Transform.scale(scale, scale));
+        return canvas.snapshot(parameters, null);
+    }
+
+}
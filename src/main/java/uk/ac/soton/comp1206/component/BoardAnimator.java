@@ -0,0 +1,152 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.paint.Color;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * The BoardAnimator runs every effect on a board's cells from one AnimationTimer, so clearing a line doesn't start a
+ * timer per block.
+ * <p>
+ * An effect is a coloured flash over a cell that fades out over a set time. Effects are timed from the pulse they first
+ * show in, so they take as long at 30 frames a second as at 120. Finished effects are kept in a pool and reused. The
+ * flash is drawn over whatever the cell holds, so a piece placed on a fading cell shows through it.
+ */
+final class BoardAnimator {
+
+    /**
+     * A flash on one cell
+     */
+    private static final class Effect {
+        int cell;
+        Color colour;
+        long duration;
+        //Set on the first pulse after the effect starts
+        long start;
+        double strength;
+    }
+
+    private final GameBoard board;
+
+    private final int cols;
+
+    /**
+     * The effect running on each cell, or null
+     */
+    private final Effect[] byCell;
+
+    private final ArrayList<Effect> active = new ArrayList<>();
+
+    private final ArrayDeque<Effect> pool = new ArrayDeque<>();
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            advance(now);
+        }
+    };
+
+    private boolean running;
+
+    /**
+     * Create an animator for a board
+     *
+     * @param board the board
+     * @param cols  the number of columns
+     * @param rows  the number of rows
+     */
+    BoardAnimator(GameBoard board, int cols, int rows) {
+        this.board = board;
+        this.cols = cols;
+        this.byCell = new Effect[cols * rows];
+    }
+
+    /**
+     * Flash a cell and fade the flash out. Starting a flash on a cell that already has one restarts it.
+     *
+     * @param x        column
+     * @param y        row
+     * @param colour   the colour of the flash
+     * @param duration how long the fade takes, in milliseconds
+     */
+    void flash(int x, int y, Color colour, long duration) {
+        int cell = y * cols + x;
+        var effect = byCell[cell];
+        if (effect == null) {
+            effect = pool.isEmpty() ? new Effect() : pool.pop();
+            effect.cell = cell;
+            byCell[cell] = effect;
+            active.add(effect);
+        }
+        effect.colour = colour;
+        effect.duration = duration * 1_000_000L;
+        effect.start = -1;
+        effect.strength = 1;
+        board.redraw(x, y);
+
+        if (!running) {
+            running = true;
+            timer.start();
+        }
+    }
+
+    /**
+     * Get how strong the flash on a cell is
+     *
+     * @param x column
+     * @param y row
+     * @return from 1 when the flash starts down to 0 when there is none
+     */
+    double strength(int x, int y) {
+        var effect = byCell[y * cols + x];
+        return effect == null ? 0 : effect.strength;
+    }
+
+    /**
+     * Get the colour of the flash on a cell
+     *
+     * @param x column
+     * @param y row
+     * @return the colour, or null if there is no flash
+     */
+    Color colour(int x, int y) {
+        var effect = byCell[y * cols + x];
+        return effect == null ? null : effect.colour;
+    }
+
+    /**
+     * Move every effect on to the given time, and redraw the cells they cover
+     *
+     * @param now the time of this pulse
+     */
+    private void advance(long now) {
+        for (int i = active.size() - 1; i >= 0; i--) {
+            var effect = active.get(i);
+            if (effect.start < 0) {
+                effect.start = now;
+            }
+            double progress = (double) (now - effect.start) / effect.duration;
+            int cell = effect.cell;
+            if (progress >= 1) {
+                //Swap the last effect into this slot rather than shifting the list
+                var last = active.remove(active.size() - 1);
+                if (last != effect) {
+                    active.set(i, last);
+                }
+                byCell[cell] = null;
+                effect.colour = null;
+                pool.push(effect);
+            } else {
+                effect.strength = 1 - progress;
+            }
+            board.redraw(cell % cols, cell / cols);
+        }
+        if (active.isEmpty()) {
+            running = false;
+            timer.stop();
+        }
+    }
+
+}
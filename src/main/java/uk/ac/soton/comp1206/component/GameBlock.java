@@ -1,6 +1,5 @@
 package uk.ac.soton.comp1206.component;
 
-import javafx.animation.AnimationTimer;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.value.ObservableValue;
@@ -18,6 +17,9 @@ import org.apache.logging.log4j.Logger;
  * Displays an empty square (when the value is 0) or a coloured square depending on value.
  *
  * The GameBlock value should be bound to a corresponding block in the Grid model.
+ *
+ * When its board draws every cell into one canvas, the GameBlock is only a handle on its cell: it has no size, and
+ * asks the board to redraw the cell instead of painting itself.
  */
 public class GameBlock extends Canvas {
 
@@ -50,11 +52,24 @@ public class GameBlock extends Canvas {
     private final double width;
     private final double height;
 
+    /**
+     * Whether the board draws this block into its own canvas
+     */
+    private final boolean drawnByBoard;
+
     public void setMyHover(boolean hover) {
         this.hover = hover;
         paint();
     }
 
+    /**
+     * Set whether this block is hovered without painting it, for the board to repaint
+     * @param hover whether the block is hovered
+     */
+    void markHover(boolean hover) {
+        this.hover = hover;
+    }
+
     private boolean hover;
 
 
@@ -87,22 +102,15 @@ public class GameBlock extends Canvas {
         this.height = height;
         this.x = x;
         this.y = y;
+        this.drawnByBoard = false;
 
         //A canvas needs a fixed width and height
         setWidth(width);
         setHeight(height);
 
-        //when the mouse moves over this block, hover it
-        setOnMouseMoved((e)->{
-            this.hover=true;
-            paint();
-        });
-
-        //when the mouse moves away from this block, unhover it
-        setOnMouseExited((e)->{
-            this.hover=false;
-            paint();
-        });
+        //when the mouse enters or leaves this block, the board moves its hover
+        setOnMouseEntered((e)-> gameBoard.hoverMouse(this));
+        setOnMouseExited((e)-> gameBoard.hoverMouse(null));
 
         //Do an initial paint
         paint();
@@ -111,6 +119,24 @@ public class GameBlock extends Canvas {
         value.addListener(this::updateValue);
     }
 
+    /**
+     * Create a handle on a cell of a board that draws all its cells into one canvas
+     * @param gameBoard the board this block belongs to
+     * @param x the column the block exists in
+     * @param y the row the block exists in
+     */
+    GameBlock(GameBoard gameBoard, int x, int y) {
+        super(0, 0);
+        this.gameBoard = gameBoard;
+        this.width = 0;
+        this.height = 0;
+        this.x = x;
+        this.y = y;
+        this.drawnByBoard = true;
+
+        value.addListener(this::updateValue);
+    }
+
     /**
      * When the value of this block is updated,
      * @param observable what was updated
@@ -125,92 +151,112 @@ public class GameBlock extends Canvas {
      * Handle painting of the block canvas
      */
     public void paint() {
+        if (drawnByBoard) {
+            gameBoard.redraw(x, y);
+            return;
+        }
+        var gc = getGraphicsContext2D();
+        draw(gc, 0, 0, width, height, value.get(), hover, BlockSprites.scaleOf(this));
+        gameBoard.paintEffects(gc, x, y, 0, 0, width, height);
+    }
+
+    /**
+     * Draw a block by copying its sprite, shared by blocks painting themselves and boards drawing every cell into one
+     * canvas
+     * @param gc where to draw
+     * @param left the left edge of the block
+     * @param top the top edge of the block
+     * @param width the width of the block
+     * @param height the height of the block
+     * @param value the value of the block
+     * @param hover whether the block is hovered
+     * @param scale the output scale of the window
+     */
+    static void draw(GraphicsContext gc, double left, double top, double width, double height, int value,
+                     boolean hover, double scale) {
+        gc.clearRect(left, top, width, height);
+        gc.drawImage(BlockSprites.get(value, hover && value == 0, width, height, scale), left, top, width, height);
+    }
+
+    /**
+     * Draw a block with fills and strokes, used to render its sprite
+     */
+    static void drawShapes(GraphicsContext gc, double left, double top, double width, double height, int value,
+                           boolean hover) {
         //If the block is empty, paint as empty
-        if(value.get() == 0) {
-            paintEmpty();
+        if(value == 0) {
+            paintEmpty(gc, left, top, width, height);
         } else {
             //If the block is not empty, paint with the colour represented by the value
-            paintColor(COLOURS[value.get()]);
+            paintColor(gc, left, top, width, height, COLOURS[value]);
         }
-        if (hover&&value.get()==0){
-            paintHover();
+        if (hover&&value==0){
+            paintHover(gc, left, top, width, height);
         }
     }
 
-    private void paintHover() {
-        GraphicsContext gc = getGraphicsContext2D();
+    private static void paintHover(GraphicsContext gc, double left, double top, double width, double height) {
         gc.setFill(Color.GRAY);
-        gc.fillRect(0, 0, width, height);
+        gc.fillRect(left, top, width, height);
     }
 
 
     /**
-     * Paint this canvas empty
+     * Paint a block empty
      */
-    private void paintEmpty() {
-        var gc = getGraphicsContext2D();
-
+    private static void paintEmpty(GraphicsContext gc, double left, double top, double width, double height) {
         //Clear
-        gc.clearRect(0,0,width,height);
+        gc.clearRect(left,top,width,height);
 
         //Fill
         gc.setFill(Color.TRANSPARENT);
-        gc.fillRect(0,0, width, height);
+        gc.fillRect(left,top, width, height);
 
         //Border
         gc.setStroke(Color.WHITE);
-        gc.strokeRect(0,0,width,height);
+        gc.strokeRect(left,top,width,height);
     }
 
     /**
-     * Paint this canvas with the given colour
+     * Paint a block with the given colour
      * @param colour the colour to paint
      */
-    private void paintColor(Paint colour) {
-        var gc = getGraphicsContext2D();
-
+    private static void paintColor(GraphicsContext gc, double left, double top, double width, double height,
+                                   Paint colour) {
         //Clear
-        gc.clearRect(0,0,width,height);
+        gc.clearRect(left,top,width,height);
 
         //Colour fill
         gc.setFill(colour);
-        gc.fillRect(0,0, width, height);
+        gc.fillRect(left,top, width, height);
 
         //Shapes
         gc.setStroke(Color.WHITE);
-        gc.strokeRoundRect(2,2,width-4,height-4,8,8);
-        gc.strokeLine(2,2,width-3,height-3);
-        gc.strokeLine(2,height - 3, width -3 ,2);
+        gc.strokeRoundRect(left+2,top+2,width-4,height-4,8,8);
+        gc.strokeLine(left+2,top+2,left+width-3,top+height-3);
+        gc.strokeLine(left+2,top+height - 3, left+width -3 ,top+2);
 
         //Border
         gc.setStroke(Color.BLACK);
-        gc.strokeRect(0,0,width,height);
+        gc.strokeRect(left,top,width,height);
     }
 
     /**
-     *  starts the animation timer that enables a block to fade out
+     * Paint a flash over a block
+     * @param colour the colour of the flash
+     * @param strength how much of the flash is left, from 1 down to 0
+     */
+    static void paintFlash(GraphicsContext gc, double left, double top, double width, double height, Color colour,
+                           double strength) {
+        gc.setFill(colour.deriveColor(0, 1, 1, strength));
+        gc.fillRect(left, top, width, height);
+    }
+
+    /**
+     * Flash the block green and fade it out, using the board's animator
      */
     public void fadeOut(){
-        //The anonymous class implements the Animation Timer interface
-        new AnimationTimer(){
-            //when opacity = 1 ,it's completely opaque
-            private double opacity = 1 ;
-            //override the end of time slice handler
-            @Override
-            public void handle(long l) {
-                paintEmpty();
-                opacity -= 0.05;
-
-                //when the opacity reaches 0 the animation stops
-                if(this.opacity <= 0){
-                    stop();
-                    return;
-                }
-                GraphicsContext gc = getGraphicsContext2D();
-                gc.setFill(Color.color(0, 1, 0, this.opacity));
-                gc.fillRect(0, 0, width, height);
-            }
-        }.start();
+        gameBoard.fade(x, y);
     }
 
     /**
@@ -237,6 +283,22 @@ public class GameBlock extends Canvas {
         return this.value.get();
     }
 
+    /**
+     * Check whether this block is hovered, by the mouse or the keyboard
+     * @return true if hovered
+     */
+    public boolean isMyHover() {
+        return hover;
+    }
+
+    /**
+     * Set the value of this block, repainting it if the value changed
+     * @param value the new value
+     */
+    public void setValue(int value) {
+        this.value.set(value);
+    }
+
     /**
      * Bind the value of this block to another property. Used to link the visual block to a corresponding block in the Grid.
      * @param input property to bind the value to
@@ -1,14 +1,26 @@
 package uk.ac.soton.comp1206.component;
 
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.GridPane;
+import javafx.scene.paint.Color;
+import javafx.stage.Window;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.event.BlockClickedListener;
+import uk.ac.soton.comp1206.event.GridChangedListener;
 import uk.ac.soton.comp1206.event.RightClickedListener;
+import uk.ac.soton.comp1206.game.ClearResult;
+import uk.ac.soton.comp1206.game.GamePiece;
 import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.GridJournal;
 
+import java.util.Arrays;
 import java.util.HashSet;
 
 /**
@@ -18,6 +30,16 @@ import java.util.HashSet;
  * The GameBoard can hold an internal grid of it's own, for example, for displaying an upcoming block. It also be
  * linked to an external grid, for the main game board.
  * <p>
+ * Blocks are not bound to the grid cell by cell. Instead the board reads the grid's journal once per frame, after
+ * the frame's animations have run, and repaints each changed block once however many times it changed. While the
+ * board is in a scene it listens for the grid's updates, so an update made outside a frame still gets one.
+ * <p>
+ * A board can draw its cells in one of two ways. In {@link Mode#BLOCKS} each cell is a GameBlock canvas of its own. In
+ * {@link Mode#CANVAS} the whole board is one canvas: the GameBlocks are only handles on their cells, changed cells are
+ * redrawn into the canvas once per frame, and the mouse position is turned into a cell arithmetically. Listeners are
+ * given a GameBlock either way. The single canvas keeps the scene graph small, which matters when many boards are
+ * showing.
+ * <p>
  * The GameBoard is only a visual representation and should not contain game logic or model logic in it, which should
  * take place in the Grid.
  */
@@ -25,6 +47,25 @@ public class GameBoard extends GridPane {
 
     private static final Logger logger = LogManager.getLogger(GameBoard.class);
 
+    /**
+     * How a board draws its cells
+     */
+    public enum Mode {
+        /**
+         * A GameBlock canvas for each cell
+         */
+        BLOCKS,
+        /**
+         * One canvas for the whole board
+         */
+        CANVAS
+    }
+
+    /**
+     * How long the flash on a cleared cell takes to fade, in milliseconds
+     */
+    private static final long CLEAR_FADE = 350;
+
     /**
      * Number of columns in the board
      */
@@ -55,10 +96,90 @@ public class GameBoard extends GridPane {
      */
     GameBlock[][] blocks;
 
+    /**
+     * Where the board has read the grid's journal up to
+     */
+    private final GridJournal.Cursor changes;
+
+    /**
+     * Cells changed since the last frame, and the value each ended up with
+     */
+    private final long[] dirty;
+    private final int[] latest;
+
+    /**
+     * Applies the changes each frame while the board is in a scene
+     */
+    private final Runnable refresh = this::refresh;
+
+    /**
+     * Asks for a frame when the grid is updated while the board is in a scene, so the update is shown on the next one
+     */
+    private final GridChangedListener updated = (grid, changed) -> Platform.requestNextPulse();
+
+    /**
+     * Repaints the board when the window's output scale changes, so the blocks are drawn with sprites at the new scale
+     */
+    private final ChangeListener<Number> rescaled = (observable, oldScale, newScale) -> repaint();
+
+    /**
+     * Moves the scale listener when the board's scene moves to another window
+     */
+    private final ChangeListener<Window> windowChanged = (observable, oldWindow, newWindow) -> {
+        if (oldWindow != null) {
+            oldWindow.outputScaleXProperty().removeListener(rescaled);
+        }
+        if (newWindow != null) {
+            newWindow.outputScaleXProperty().addListener(rescaled);
+            repaint();
+        }
+    };
+
+    /**
+     * How this board draws its cells
+     */
+    private final Mode mode;
+
+    /**
+     * The canvas every cell is drawn into, in CANVAS mode
+     */
+    private Canvas canvas;
+
+    /**
+     * Cells to redraw into the canvas on the next frame
+     */
+    private final long[] stale;
+
+    /**
+     * Runs the effects on the board's cells
+     */
+    private final BoardAnimator animator;
+
     //keep the track of Position
     protected int XPosition;
     protected int YPosition;
 
+    /**
+     * Whether the hover is showing; the mouse leaving the board hides it
+     */
+    private boolean hoverShown;
+
+    /**
+     * The piece whose shape is hovered, or null to hover a single cell
+     */
+    private GamePiece hoverPiece;
+
+    /**
+     * Set when the hover has moved since it was last shown
+     */
+    private boolean hoverMoved;
+
+    /**
+     * Cells shown as hovered, and the cells to show on the next frame
+     */
+    private long[] hovered;
+    private long[] nextHovered;
+
     /**
      * The listener to call when a specific block is clicked
      */
@@ -77,14 +198,38 @@ public class GameBoard extends GridPane {
      * @param height the visual height
      */
     public GameBoard(Grid grid, double width, double height) {
+        this(grid, width, height, Mode.BLOCKS);
+    }
+
+    /**
+     * Create a new GameBoard, based off a given grid, with a visual width and height, drawn in the given mode
+     *
+     * @param grid   linked grid
+     * @param width  the visual width
+     * @param height the visual height
+     * @param mode   how to draw the cells
+     */
+    public GameBoard(Grid grid, double width, double height, Mode mode) {
         this.cols = grid.getCols();
         this.rows = grid.getRows();
         this.width = width;
         this.height = height;
         this.grid = grid;
+        this.mode = mode;
+
+        this.changes = this.grid.getJournal().cursor();
+        this.dirty = new long[(cols * rows + 63) >>> 6];
+        this.latest = new int[cols * rows];
+        this.stale = new long[dirty.length];
+        this.animator = new BoardAnimator(this, cols, rows);
+        this.hovered = new long[dirty.length];
+        this.nextHovered = new long[dirty.length];
 
         //Build the GameBoard
         build();
+
+        //Follow the grid on every frame while the board is showing
+        sceneProperty().addListener((observable, oldScene, newScene) -> follow(oldScene, newScene));
     }
 
     /**
@@ -97,14 +242,20 @@ public class GameBoard extends GridPane {
      * @param height the visual height
      */
     public GameBoard(int cols, int rows, double width, double height) {
-        this.cols = cols;
-        this.rows = rows;
-        this.width = width;
-        this.height = height;
-        this.grid = new Grid(cols, rows);
+        this(new Grid(cols, rows), width, height);
+    }
 
-        //Build the GameBoard
-        build();
+    /**
+     * Create a new GameBoard with it's own internal grid, drawn in the given mode
+     *
+     * @param cols   number of columns for internal grid
+     * @param rows   number of rows for internal grid
+     * @param width  the visual width
+     * @param height the visual height
+     * @param mode   how to draw the cells
+     */
+    public GameBoard(int cols, int rows, double width, double height, Mode mode) {
+        this(new Grid(cols, rows), width, height, mode);
     }
 
     /**
@@ -125,9 +276,13 @@ public class GameBoard extends GridPane {
         return blocks[XPosition][YPosition];
     }
 
+    /**
+     * Move the hover with the keyboard. The move is shown on the next frame, so key repeats between frames only
+     * repaint once.
+     *
+     * @param code the key pressed
+     */
     public void doHover(KeyCode code){
-        //Eliminate the previous hover
-        getHoverBlock().setMyHover(false);
         switch (code) {
             //when right arrow or D is pressed the block is moved one block to the right
             case RIGHT, D -> {
@@ -158,7 +313,84 @@ public class GameBoard extends GridPane {
             }
         }
         //Generate the next hover
-        getHoverBlock().setMyHover(true);
+        moveHover(XPosition, YPosition, true);
+    }
+
+    /**
+     * Move the hover to the block under the mouse, or hide it when the mouse leaves the board
+     *
+     * @param block the block under the mouse, or null
+     */
+    void hoverMouse(GameBlock block) {
+        if (block == null) {
+            moveHover(XPosition, YPosition, false);
+        } else {
+            moveHover(block.getX(), block.getY(), true);
+        }
+    }
+
+    /**
+     * Hover the shape of a piece rather than a single cell, centred on the hovered cell
+     *
+     * @param piece the piece, or null for a single cell
+     */
+    public void setHoverPiece(GamePiece piece) {
+        if (piece != hoverPiece) {
+            hoverPiece = piece;
+            hoverMoved = true;
+            Platform.requestNextPulse();
+        }
+    }
+
+    private void moveHover(int x, int y, boolean shown) {
+        if (x == XPosition && y == YPosition && shown == hoverShown) {
+            return;
+        }
+        XPosition = x;
+        YPosition = y;
+        hoverShown = shown;
+        hoverMoved = true;
+        Platform.requestNextPulse();
+    }
+
+    /**
+     * Show the hover where it has moved to, repainting only the cells entering or leaving it
+     */
+    private void applyHover() {
+        if (!hoverMoved) {
+            return;
+        }
+        hoverMoved = false;
+
+        Arrays.fill(nextHovered, 0L);
+        if (hoverShown) {
+            if (hoverPiece == null) {
+                markHovered(XPosition, YPosition);
+            } else {
+                for (int block = 0; block < hoverPiece.size(); block++) {
+                    markHovered(XPosition + hoverPiece.getOffsetX(block), YPosition + hoverPiece.getOffsetY(block));
+                }
+            }
+        }
+
+        for (int w = 0; w < hovered.length; w++) {
+            for (long bits = hovered[w] ^ nextHovered[w]; bits != 0; bits &= bits - 1) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(bits);
+                var block = blocks[index % cols][index / cols];
+                block.markHover((nextHovered[w] & (1L << index)) != 0);
+                redraw(block.getX(), block.getY());
+            }
+        }
+        var shown = hovered;
+        hovered = nextHovered;
+        nextHovered = shown;
+    }
+
+    private void markHovered(int x, int y) {
+        if (x >= 0 && x < cols && y >= 0 && y < rows) {
+            int index = y * cols + x;
+            nextHovered[index >>> 6] |= 1L << index;
+        }
     }
     /**
      * Build the GameBoard by creating a block at every x and y column and row
@@ -169,10 +401,15 @@ public class GameBoard extends GridPane {
         setMaxWidth(width);
         setMaxHeight(height);
 
-        setGridLinesVisible(true);
-
         blocks = new GameBlock[cols][rows];
 
+        if (mode == Mode.CANVAS) {
+            buildCanvas();
+            return;
+        }
+
+        setGridLinesVisible(true);
+
         for (var y = 0; y < rows; y++) {
             for (var x = 0; x < cols; x++) {
                 createBlock(x, y);
@@ -181,6 +418,120 @@ public class GameBoard extends GridPane {
 
     }
 
+    /**
+     * Build the board as one canvas, with a handle on each cell for listeners
+     */
+    private void buildCanvas() {
+        canvas = new Canvas(width, height);
+        add(canvas, 0, 0);
+
+        for (var y = 0; y < rows; y++) {
+            for (var x = 0; x < cols; x++) {
+                var block = new GameBlock(this, x, y);
+                block.setValue(grid.get(x, y));
+                blocks[x][y] = block;
+            }
+        }
+
+        //Work out which cell the mouse is over from its position
+        canvas.setOnMouseMoved(e -> hoverMouse(blockAt(e.getX(), e.getY())));
+        canvas.setOnMouseExited(e -> hoverMouse(null));
+        canvas.setOnMouseClicked(e -> {
+            var block = blockAt(e.getX(), e.getY());
+            if (block != null) {
+                blockClicked(e, block);
+            }
+        });
+
+        Arrays.fill(stale, -1L);
+        drawStale();
+    }
+
+    /**
+     * Find the block at a point on the canvas
+     *
+     * @param x horizontal position in the canvas
+     * @param y vertical position in the canvas
+     * @return the block, or null if the point is off the board
+     */
+    private GameBlock blockAt(double x, double y) {
+        int col = (int) Math.floor(x * cols / width);
+        int row = (int) Math.floor(y * rows / height);
+        if (col < 0 || col >= cols || row < 0 || row >= rows) {
+            return null;
+        }
+        return blocks[col][row];
+    }
+
+    /**
+     * Redraw a cell: straight away in BLOCKS mode, or into the canvas on the next frame in CANVAS mode
+     *
+     * @param x column
+     * @param y row
+     */
+    void redraw(int x, int y) {
+        if (canvas == null) {
+            blocks[x][y].paint();
+            return;
+        }
+        int index = y * cols + x;
+        stale[index >>> 6] |= 1L << index;
+        Platform.requestNextPulse();
+    }
+
+    /**
+     * Flash a cell green and fade it out over whatever the cell holds. Called by the cell's GameBlock.
+     *
+     * @param x column
+     * @param y row
+     */
+    void fade(int x, int y) {
+        animator.flash(x, y, Color.LIME, CLEAR_FADE);
+    }
+
+    /**
+     * Paint the flash on a cell, if it has one, over what has already been drawn there
+     *
+     * @param gc     where to draw
+     * @param x      column
+     * @param y      row
+     * @param left   the left edge of the cell
+     * @param top    the top edge of the cell
+     * @param width  the width of the cell
+     * @param height the height of the cell
+     */
+    void paintEffects(GraphicsContext gc, int x, int y, double left, double top, double width, double height) {
+        var strength = animator.strength(x, y);
+        if (strength > 0) {
+            GameBlock.paintFlash(gc, left, top, width, height, animator.colour(x, y), strength);
+        }
+    }
+
+    /**
+     * Draw the stale cells into the canvas
+     */
+    private void drawStale() {
+        var gc = canvas.getGraphicsContext2D();
+        var scale = BlockSprites.scaleOf(this);
+        var blockWidth = width / cols;
+        var blockHeight = height / rows;
+        for (int w = 0; w < stale.length; w++) {
+            for (long bits = stale[w]; bits != 0; bits &= bits - 1) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(bits);
+                if (index >= cols * rows) {
+                    break;
+                }
+                int x = index % cols;
+                int y = index / cols;
+                var block = blocks[x][y];
+                GameBlock.draw(gc, x * blockWidth, y * blockHeight, blockWidth, blockHeight,
+                        block.getValue(), block.isMyHover(), scale);
+                paintEffects(gc, x, y, x * blockWidth, y * blockHeight, blockWidth, blockHeight);
+            }
+            stale[w] = 0;
+        }
+    }
+
     /**
      * Create a block at the given x and y position in the GameBoard
      *
@@ -200,8 +551,8 @@ public class GameBoard extends GridPane {
         //Add to our block directory
         blocks[x][y] = block;
 
-        //Link the GameBlock component to the corresponding value in the Grid
-        block.bind(grid.getGridProperty(x, y));
+        //Show the current value; later changes come from the journal
+        block.setValue(grid.get(x, y));
 
         //Add a mouse click handler to the block to trigger GameBoard blockClicked method
         block.setOnMouseClicked((e) -> blockClicked(e, block));
@@ -209,6 +560,72 @@ public class GameBoard extends GridPane {
         return block;
     }
 
+    /**
+     * Apply the changes made to the grid and the hover since the last frame, repainting each changed block once. In
+     * CANVAS mode the changed cells are then drawn into the canvas.
+     */
+    public void refresh() {
+        applyHover();
+        if (changes.read(this::changed) < 0) {
+            //Fell too far behind, so show the whole grid again
+            for (var y = 0; y < rows; y++) {
+                for (var x = 0; x < cols; x++) {
+                    blocks[x][y].setValue(grid.get(x, y));
+                }
+            }
+            Arrays.fill(dirty, 0L);
+        } else {
+            for (int w = 0; w < dirty.length; w++) {
+                for (long bits = dirty[w]; bits != 0; bits &= bits - 1) {
+                    int index = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    blocks[index % cols][index / cols].setValue(latest[index]);
+                }
+                dirty[w] = 0;
+            }
+        }
+        if (canvas != null) {
+            drawStale();
+        }
+    }
+
+    private void changed(int index, int oldValue, int newValue, long sequence) {
+        dirty[index >>> 6] |= 1L << index;
+        latest[index] = newValue;
+    }
+
+    /**
+     * Move the per-frame refresh from one scene to another
+     *
+     * @param oldScene the scene the board has left, or null
+     * @param newScene the scene the board is now in, or null
+     */
+    private void follow(Scene oldScene, Scene newScene) {
+        if (oldScene != null) {
+            oldScene.removePostLayoutPulseListener(refresh);
+            grid.removeChangeListener(updated);
+            oldScene.windowProperty().removeListener(windowChanged);
+            windowChanged.changed(null, oldScene.getWindow(), null);
+        }
+        if (newScene != null) {
+            newScene.addPostLayoutPulseListener(refresh);
+            grid.addChangeListener(updated);
+            newScene.windowProperty().addListener(windowChanged);
+            windowChanged.changed(null, null, newScene.getWindow());
+            refresh();
+        }
+    }
+
+    /**
+     * Repaint every block, for example when the sprites have been rendered again at a new scale
+     */
+    public void repaint() {
+        for (var column : blocks) {
+            for (var block : column) {
+                block.paint();
+            }
+        }
+    }
+
     /**
      * fades out a series of blocks
      * @param blockCoordinates are the coordinates of the block
@@ -219,6 +636,16 @@ public class GameBoard extends GridPane {
         }
     }
 
+    /**
+     * fades out the blocks in a line clear
+     * @param result the lines and blocks that were cleared
+     */
+    public void fadeOutLine(ClearResult result) {
+        for (int cell = result.nextCell(0); cell >= 0; cell = result.nextCell(cell + 1)) {
+            getBlock(result.getX(cell), result.getY(cell)).fadeOut();
+        }
+    }
+
     /**
      * Set the listener to handle an event when a block is clicked
      *
@@ -16,14 +16,20 @@ public class PieceBoard extends GameBoard {
         super(N, N, width, height);
     }
 
+    public PieceBoard(double width, double height, Mode mode) {
+        super(N, N, width, height, mode);
+    }
+
     /**
-     * display a piece on the piece board
+     * display a piece on the piece board, replacing the last one in a single update of the grid
      *
      * @param piece is the piece to be displayed
      */
     public void setPiece(GamePiece piece) {
-        this.grid.clearGrid();
-        grid.playPiece(piece, 1, 1);
+        grid.update(board -> {
+            board.clearGrid();
+            board.playPiece(piece, 1, 1);
+        });
     }
 
 }
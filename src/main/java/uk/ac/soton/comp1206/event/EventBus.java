@@ -0,0 +1,319 @@
+package uk.ac.soton.comp1206.event;
+
+import javafx.application.Platform;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * The EventBus passes events from a game to any number of subscribers: the scene, sounds, replay recorders, metrics or
+ * the network.
+ * <p>
+ * A subscriber picks the type of event it wants (a class or an interface, so subscribing to Object gets everything)
+ * and the executor its handler runs on: {@link #INLINE} on the publishing thread, {@link #FX} on the JavaFX thread,
+ * {@link #BACKGROUND}, or any other. Each subscriber sees its events in the order they were published, whatever its
+ * executor.
+ * <p>
+ * Subscribers are kept in copy-on-write arrays, so publishing takes no locks. Subscribing and unsubscribing replace
+ * the arrays, and are expected to be rare.
+ * <p>
+ * A {@link ReusedEvent} is only copied if a subscriber will see it after publishing returns: one on another executor,
+ * or a batch subscriber. Inline subscribers get the publisher's own instance.
+ * <p>
+ * A publisher can group events into a batch with {@link #batch()} or {@link #runBatched(Runnable)}. Batch subscribers
+ * then get every event of their type from the batch as one array when it closes, for example all the events from one
+ * placement.
+ */
+public class EventBus {
+
+    private static final Logger logger = LogManager.getLogger(EventBus.class);
+
+    /**
+     * Run handlers straight away on the thread that publishes the event
+     */
+    public static final Executor INLINE = Runnable::run;
+
+    /**
+     * Run handlers on the JavaFX thread
+     */
+    public static final Executor FX = Platform::runLater;
+
+    /**
+     * Run handlers on a shared pool of background threads
+     */
+    public static final Executor BACKGROUND = Executors.newCachedThreadPool(task -> {
+        var thread = new Thread(task, "Event handler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * A subscription to the bus, used to stop receiving events
+     */
+    public final class Subscription implements AutoCloseable {
+        private final Subscriber<?> subscriber;
+
+        private Subscription(Subscriber<?> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        /**
+         * Stop receiving events. Events already handed to the executor may still arrive.
+         */
+        @Override
+        public void close() {
+            remove(subscriber);
+        }
+    }
+
+    /**
+     * Opened by {@link #batch()}, and closed to deliver the batch
+     */
+    public final class Batch implements AutoCloseable {
+        private Batch() {
+        }
+
+        @Override
+        public void close() {
+            closeBatch();
+        }
+    }
+
+    /**
+     * The subscribers, and the subscribers worked out for each event class seen so far. Replaced whenever a subscriber
+     * is added or removed.
+     */
+    private static final class State {
+        final Subscriber<?>[] all;
+        final ConcurrentHashMap<Class<?>, Subscriber<?>[]> byClass = new ConcurrentHashMap<>();
+
+        State(Subscriber<?>[] all) {
+            this.all = all;
+        }
+
+        Subscriber<?>[] forClass(Class<?> type) {
+            return byClass.computeIfAbsent(type, key -> Arrays.stream(all)
+                    .filter(subscriber -> subscriber.type.isAssignableFrom(key))
+                    .toArray(Subscriber<?>[]::new));
+        }
+    }
+
+    /**
+     * A subscriber with its own queue, so its events are handled one at a time and in order on any executor
+     */
+    private static final class Subscriber<E> {
+        final Class<E> type;
+        final Executor executor;
+        final Consumer<? super E> handler;
+        final Consumer<E[]> batchHandler;
+        final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Subscriber(Class<E> type, Executor executor, Consumer<? super E> handler, Consumer<E[]> batchHandler) {
+            this.type = type;
+            this.executor = executor;
+            this.handler = handler;
+            this.batchHandler = batchHandler;
+        }
+
+        void deliver(Object event) {
+            var typed = type.cast(event);
+            run(() -> handler.accept(typed));
+        }
+
+        @SuppressWarnings("unchecked")
+        void deliverBatch(ArrayList<Object> events) {
+            var array = (E[]) Array.newInstance(type, events.size());
+            for (int i = 0; i < array.length; i++) {
+                array[i] = type.cast(events.get(i));
+            }
+            run(() -> batchHandler.accept(array));
+        }
+
+        private void run(Runnable task) {
+            if (executor == INLINE) {
+                handle(task);
+                return;
+            }
+            queue.add(task);
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                Runnable task;
+                while ((task = queue.poll()) != null) {
+                    handle(task);
+                }
+                scheduled.set(false);
+            } while (!queue.isEmpty() && scheduled.compareAndSet(false, true));
+        }
+
+        private static void handle(Runnable task) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.error("Event handler failed", e);
+            }
+        }
+    }
+
+    private volatile State state = new State(new Subscriber<?>[0]);
+
+    /**
+     * Handed out by {@link #batch()}; it holds no state of its own
+     */
+    private final Batch batch = new Batch();
+
+    /**
+     * The batch open on each publishing thread
+     */
+    private final ThreadLocal<OpenBatch> batches = ThreadLocal.withInitial(OpenBatch::new);
+
+    /**
+     * How many batches are open on a thread, and the events held back for batch subscribers. Only the outermost batch
+     * delivers, and nothing is allocated unless a batch subscriber gets an event.
+     */
+    private static final class OpenBatch {
+        int depth;
+        IdentityHashMap<Subscriber<?>, ArrayList<Object>> events;
+    }
+
+    /**
+     * Handle every event of a type, on the publishing thread
+     *
+     * @param type    the type of event
+     * @param handler the handler
+     * @param <E>     the type of event
+     * @return the subscription
+     */
+    public <E> Subscription subscribe(Class<E> type, Consumer<? super E> handler) {
+        return subscribe(type, INLINE, handler);
+    }
+
+    /**
+     * Handle every event of a type, on the given executor
+     *
+     * @param type     the type of event
+     * @param executor where the handler runs
+     * @param handler  the handler
+     * @param <E>      the type of event
+     * @return the subscription
+     */
+    public <E> Subscription subscribe(Class<E> type, Executor executor, Consumer<? super E> handler) {
+        return add(new Subscriber<>(type, executor, handler, null));
+    }
+
+    /**
+     * Handle the events of a type from each batch together, on the given executor. Events published outside a batch
+     * arrive as an array of one.
+     *
+     * @param type     the type of event
+     * @param executor where the handler runs
+     * @param handler  the handler, given the events in the order they were published
+     * @param <E>      the type of event
+     * @return the subscription
+     */
+    public <E> Subscription subscribeBatch(Class<E> type, Executor executor, Consumer<E[]> handler) {
+        return add(new Subscriber<>(type, executor, null, handler));
+    }
+
+    /**
+     * Send an event to everything subscribed to its type
+     *
+     * @param event the event
+     */
+    public void publish(Object event) {
+        var subscribers = state.forClass(event.getClass());
+        if (subscribers.length == 0) {
+            return;
+        }
+        var batch = batches.get();
+        //One copy of a reused event is shared by every subscriber that sees it later
+        Object kept = event instanceof ReusedEvent ? null : event;
+        for (var subscriber : subscribers) {
+            if (subscriber.batchHandler == null && subscriber.executor == INLINE) {
+                subscriber.deliver(event);
+                continue;
+            }
+            if (kept == null) {
+                kept = ((ReusedEvent) event).detach();
+            }
+            if (subscriber.batchHandler == null) {
+                subscriber.deliver(kept);
+            } else if (batch.depth > 0) {
+                if (batch.events == null) {
+                    batch.events = new IdentityHashMap<>();
+                }
+                batch.events.computeIfAbsent(subscriber, key -> new ArrayList<>()).add(kept);
+            } else {
+                var single = new ArrayList<>(1);
+                single.add(kept);
+                subscriber.deliverBatch(single);
+            }
+        }
+    }
+
+    /**
+     * Open a batch on this thread. Batch subscribers get the events published until it is closed in one go. Batches
+     * can be nested, in which case the outermost one delivers.
+     *
+     * @return the batch, to close when done
+     */
+    public Batch batch() {
+        batches.get().depth++;
+        return batch;
+    }
+
+    /**
+     * Run some code in a batch on this thread, so batch subscribers get the events it publishes in one go
+     *
+     * @param work the code to run
+     */
+    public void runBatched(Runnable work) {
+        batches.get().depth++;
+        try {
+            work.run();
+        } finally {
+            closeBatch();
+        }
+    }
+
+    private void closeBatch() {
+        var open = batches.get();
+        if (--open.depth > 0 || open.events == null) {
+            return;
+        }
+        var events = open.events;
+        open.events = null;
+        for (var entry : events.entrySet()) {
+            entry.getKey().deliverBatch(entry.getValue());
+        }
+    }
+
+    private synchronized Subscription add(Subscriber<?> subscriber) {
+        var all = Arrays.copyOf(state.all, state.all.length + 1);
+        all[all.length - 1] = subscriber;
+        state = new State(all);
+        return new Subscription(subscriber);
+    }
+
+    private synchronized void remove(Subscriber<?> subscriber) {
+        state = new State(Arrays.stream(state.all)
+                .filter(existing -> existing != subscriber)
+                .toArray(Subscriber<?>[]::new));
+    }
+
+}
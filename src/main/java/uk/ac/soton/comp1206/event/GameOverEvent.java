@@ -0,0 +1,11 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.Game;
+
+/**
+ * The last life was lost
+ *
+ * @param game the game that ended
+ */
+public record GameOverEvent(Game game) {
+}
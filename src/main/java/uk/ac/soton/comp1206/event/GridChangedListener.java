@@ -0,0 +1,19 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.Grid;
+
+/**
+ * The Grid Changed listener is told when cells of a Grid have changed. Each update of the grid, however many cells it
+ * touches, arrives as a single call.
+ */
+public interface GridChangedListener {
+
+    /**
+     * Handle a change to the grid
+     *
+     * @param grid    the grid that changed
+     * @param changed bit {@code y * cols + x} is set for each cell whose value changed. The grid reuses the array, so
+     *                it is only valid during the call.
+     */
+    void gridChanged(Grid grid, long[] changed);
+}
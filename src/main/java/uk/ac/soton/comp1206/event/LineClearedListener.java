@@ -1,6 +1,7 @@
 package uk.ac.soton.comp1206.event;
 
 import uk.ac.soton.comp1206.component.GameBlockCoordinate;
+import uk.ac.soton.comp1206.game.ClearResult;
 
 import java.util.HashSet;
 
@@ -13,4 +14,19 @@ public interface LineClearedListener {
      * @param blockCoordinates is a set include are the x and y coordinates of a block
      */
     void lineCleared(HashSet<GameBlockCoordinate> blockCoordinates);
+
+    /**
+     * Handle a line clear given as bitmasks. The Game calls this one. By default the cleared blocks are turned into a
+     * set of coordinates and passed on, so override it to avoid allocating on every clear.
+     *
+     * @param result the lines and blocks cleared. The game calls this on the next frame with a copy of its own result,
+     *               which can be kept.
+     */
+    default void lineCleared(ClearResult result) {
+        var blockCoordinates = new HashSet<GameBlockCoordinate>();
+        for (int cell = result.nextCell(0); cell >= 0; cell = result.nextCell(cell + 1)) {
+            blockCoordinates.add(new GameBlockCoordinate(result.getX(cell), result.getY(cell)));
+        }
+        lineCleared(blockCoordinates);
+    }
 }
@@ -0,0 +1,17 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.ClearResult;
+
+/**
+ * Placing a piece cleared one or more lines. The game publishes the same event each time, holding its own result, so
+ * an inline subscriber must not keep the result after the call. Subscribers on any other executor get a copy.
+ *
+ * @param result the lines and blocks cleared
+ */
+public record LinesClearedEvent(ClearResult result) implements ReusedEvent {
+
+    @Override
+    public LinesClearedEvent detach() {
+        return new LinesClearedEvent(result.copy());
+    }
+}
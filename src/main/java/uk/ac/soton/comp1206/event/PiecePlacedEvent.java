@@ -0,0 +1,13 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GamePiece;
+
+/**
+ * A piece was placed on the board
+ *
+ * @param piece the piece, in the rotation it was placed
+ * @param x     column of its centre
+ * @param y     row of its centre
+ */
+public record PiecePlacedEvent(GamePiece piece, int x, int y) {
+}
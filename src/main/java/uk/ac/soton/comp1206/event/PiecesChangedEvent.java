@@ -0,0 +1,12 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GamePiece;
+
+/**
+ * The current or following piece changed, because a piece was played, rotated, swapped or timed out
+ *
+ * @param current   the new current piece
+ * @param following the new following piece
+ */
+public record PiecesChangedEvent(GamePiece current, GamePiece following) {
+}
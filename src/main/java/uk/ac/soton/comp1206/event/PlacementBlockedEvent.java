@@ -0,0 +1,13 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GamePiece;
+
+/**
+ * The player tried to place a piece where it doesn't fit
+ *
+ * @param piece the piece
+ * @param x     column of its centre
+ * @param y     row of its centre
+ */
+public record PlacementBlockedEvent(GamePiece piece, int x, int y) {
+}
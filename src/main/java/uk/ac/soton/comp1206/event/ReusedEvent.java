@@ -0,0 +1,16 @@
+package uk.ac.soton.comp1206.event;
+
+/**
+ * An event the publisher fills in again for the next one, so publishing it allocates nothing. Subscribers that run
+ * during {@link EventBus#publish(Object)} get the event itself; the bus hands any others a copy from
+ * {@link #detach()}.
+ */
+public interface ReusedEvent {
+
+    /**
+     * Copy the event, so it can be kept after the publisher reuses it
+     *
+     * @return the copy
+     */
+    Object detach();
+}
@@ -0,0 +1,9 @@
+package uk.ac.soton.comp1206.event;
+
+/**
+ * The piece timer restarted, because the game started, a piece was placed or a life was lost
+ *
+ * @param delay time until the current piece times out, in milliseconds
+ */
+public record TimerRestartedEvent(long delay) {
+}
@@ -0,0 +1,65 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * A PieceSource which deals pieces from a shuffled bag holding one of every piece. When the bag is empty it is
+ * refilled and shuffled again, so every piece turns up once in each run of {@link GamePiece#PIECES}.
+ */
+public class BagPieceSource extends PieceSource {
+
+    private final SplittableRandom random;
+
+    /**
+     * The bag of piece numbers, dealt from the front
+     */
+    private final int[] bag = new int[GamePiece.PIECES];
+
+    /**
+     * Position of the next piece to deal from the bag
+     */
+    private int dealt = GamePiece.PIECES;
+
+    /**
+     * Create a new bag piece source
+     *
+     * @param seed      the seed, the same seed always gives the same pieces
+     * @param lookahead the number of upcoming pieces to keep ready
+     */
+    public BagPieceSource(long seed, int lookahead) {
+        this(new SplittableRandom(seed), lookahead);
+    }
+
+    private BagPieceSource(SplittableRandom random, int lookahead) {
+        super(lookahead);
+        this.random = random;
+        for (int piece = 0; piece < bag.length; piece++) {
+            bag[piece] = piece;
+        }
+    }
+
+    @Override
+    protected int generate() {
+        if (dealt == bag.length) {
+            //Shuffle the bag again
+            for (int i = bag.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = bag[i];
+                bag[i] = bag[j];
+                bag[j] = swap;
+            }
+            dealt = 0;
+        }
+        return bag[dealt++];
+    }
+
+    /**
+     * Create a new source with an independent stream of pieces, for running games in parallel
+     *
+     * @return the new source
+     */
+    public BagPieceSource split() {
+        return new BagPieceSource(random.split(), getLookahead());
+    }
+
+}
@@ -0,0 +1,42 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A BoardEvaluator gives a value to a board position, used by the {@link PlacementSearch} to compare the boards that
+ * different moves lead to. Higher is better. Points actually scored by a move are added on by the search, so an
+ * evaluator only needs to judge how promising the board is for the future.
+ * <p>
+ * Evaluators are called from many threads at once and must not change the grid.
+ */
+@FunctionalInterface
+public interface BoardEvaluator {
+
+    /**
+     * Give a value to a board
+     *
+     * @param grid the board to judge
+     * @return the value of the board, higher is better
+     */
+    double evaluate(Grid grid);
+
+    /**
+     * An evaluator that likes nearly complete lines and dislikes a crowded board. Each row and column counts the
+     * square of how full it is, and every filled cell costs a little.
+     *
+     * @return the standard evaluator
+     */
+    static BoardEvaluator standard() {
+        return grid -> {
+            double value = 0;
+            for (int y = 0; y < grid.getRows(); y++) {
+                double fill = (double) grid.getRowCount(y) / grid.getCols();
+                value += fill * fill;
+            }
+            for (int x = 0; x < grid.getCols(); x++) {
+                double fill = (double) grid.getColCount(x) / grid.getRows();
+                value += fill * fill;
+            }
+            return 10 * value - 2 * grid.getFilledCount();
+        };
+    }
+
+}
@@ -0,0 +1,258 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Arrays;
+
+/**
+ * The ClearResult records which lines and blocks were cleared by playing a piece, as bitmasks rather than a set of
+ * coordinates.
+ * <p>
+ * Cells are indexed the same way as in the Grid, {@code y * cols + x}. A ClearResult is reused for every placement, so
+ * listeners should read it during the callback and not keep hold of it.
+ * <p>
+ * To walk the cleared blocks without allocating anything:
+ * <pre>
+ *     for (int cell = result.nextCell(0); cell >= 0; cell = result.nextCell(cell + 1)) {
+ *         int x = result.getX(cell);
+ *         int y = result.getY(cell);
+ *     }
+ * </pre>
+ */
+public class ClearResult {
+
+    /**
+     * Number of columns in the grid this result belongs to
+     */
+    private int cols;
+
+    /**
+     * Number of rows in the grid this result belongs to
+     */
+    private int rows;
+
+    /**
+     * One bit per cell, set when the block was cleared
+     */
+    private long[] cells = new long[1];
+
+    /**
+     * One bit per row, set when the row was cleared
+     */
+    private long[] clearedRows = new long[1];
+
+    /**
+     * One bit per column, set when the column was cleared
+     */
+    private long[] clearedCols = new long[1];
+
+    /**
+     * Number of lines (rows and columns) cleared
+     */
+    private int lines;
+
+    /**
+     * Number of distinct blocks cleared
+     */
+    private int blocks;
+
+    /**
+     * Empty this result ready for a placement on a grid of the given size. Only allocates if the size has grown.
+     *
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    public void reset(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+        this.cells = ensure(cells, cols * rows);
+        this.clearedRows = ensure(clearedRows, rows);
+        this.clearedCols = ensure(clearedCols, cols);
+        this.lines = 0;
+        this.blocks = 0;
+    }
+
+    /**
+     * Make a copy of this result that can be kept after the next placement, for example to hand to another thread
+     *
+     * @return the copy
+     */
+    public ClearResult copy() {
+        var copy = new ClearResult();
+        copy.cols = cols;
+        copy.rows = rows;
+        copy.cells = cells.clone();
+        copy.clearedRows = clearedRows.clone();
+        copy.clearedCols = clearedCols.clone();
+        copy.lines = lines;
+        copy.blocks = blocks;
+        return copy;
+    }
+
+    /**
+     * Mark a row as cleared, along with every block in it
+     *
+     * @param y row
+     */
+    public void addRow(int y) {
+        clearedRows[y >>> 6] |= 1L << y;
+        lines++;
+        for (int x = 0; x < cols; x++) {
+            addCell(y * cols + x);
+        }
+    }
+
+    /**
+     * Mark a column as cleared, along with every block in it
+     *
+     * @param x column
+     */
+    public void addCol(int x) {
+        clearedCols[x >>> 6] |= 1L << x;
+        lines++;
+        for (int y = 0; y < rows; y++) {
+            addCell(y * cols + x);
+        }
+    }
+
+    /**
+     * Mark a single block as cleared, counting it only once
+     *
+     * @param cell cell index
+     */
+    private void addCell(int cell) {
+        long bit = 1L << cell;
+        if ((cells[cell >>> 6] & bit) == 0) {
+            cells[cell >>> 6] |= bit;
+            blocks++;
+        }
+    }
+
+    /**
+     * Get the number of lines (rows and columns) cleared
+     *
+     * @return lines cleared
+     */
+    public int getLines() {
+        return lines;
+    }
+
+    /**
+     * Get the number of distinct blocks cleared. A block where two cleared lines cross is only counted once.
+     *
+     * @return blocks cleared
+     */
+    public int getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * Check whether a row was cleared
+     *
+     * @param y row
+     * @return true if cleared
+     */
+    public boolean isRowCleared(int y) {
+        return (clearedRows[y >>> 6] & (1L << y)) != 0;
+    }
+
+    /**
+     * Check whether a column was cleared
+     *
+     * @param x column
+     * @return true if cleared
+     */
+    public boolean isColCleared(int x) {
+        return (clearedCols[x >>> 6] & (1L << x)) != 0;
+    }
+
+    /**
+     * Check whether the block at a given column and row was cleared
+     *
+     * @param x column
+     * @param y row
+     * @return true if cleared
+     */
+    public boolean isCleared(int x, int y) {
+        int cell = y * cols + x;
+        return (cells[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Find the next cleared cell at or after the given cell index
+     *
+     * @param from cell index to start from
+     * @return the index of the next cleared cell, or -1 if there are no more
+     */
+    public int nextCell(int from) {
+        int total = cols * rows;
+        if (from >= total) {
+            return -1;
+        }
+        int word = from >>> 6;
+        long bits = cells[word] & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                int cell = (word << 6) + Long.numberOfTrailingZeros(bits);
+                return cell < total ? cell : -1;
+            }
+            if (++word >= (total + 63) >>> 6) {
+                return -1;
+            }
+            bits = cells[word];
+        }
+    }
+
+    /**
+     * Get the column of a cell index
+     *
+     * @param cell cell index
+     * @return column
+     */
+    public int getX(int cell) {
+        return cell % cols;
+    }
+
+    /**
+     * Get the row of a cell index
+     *
+     * @param cell cell index
+     * @return row
+     */
+    public int getY(int cell) {
+        return cell / cols;
+    }
+
+    /**
+     * Get the number of columns of the grid this result belongs to
+     *
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows of the grid this result belongs to
+     *
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Zero a mask, growing it if it is too small to hold the given number of bits
+     *
+     * @param mask the current mask
+     * @param bits number of bits needed
+     * @return an empty mask big enough
+     */
+    private static long[] ensure(long[] mask, int bits) {
+        int words = Math.max(1, (bits + 63) >>> 6);
+        if (mask.length < words) {
+            return new long[words];
+        }
+        Arrays.fill(mask, 0L);
+        return mask;
+    }
+
+}
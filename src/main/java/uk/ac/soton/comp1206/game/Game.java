@@ -1,37 +1,66 @@
 package uk.ac.soton.comp1206.game;
 
-import javafx.application.Platform;
+import javafx.animation.AnimationTimer;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.util.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.component.GameBlock;
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
+import uk.ac.soton.comp1206.event.EventBus;
 import uk.ac.soton.comp1206.event.GameLoopListener;
+import uk.ac.soton.comp1206.event.GameOverEvent;
 import uk.ac.soton.comp1206.event.GameOverListener;
 import uk.ac.soton.comp1206.event.LineClearedListener;
+import uk.ac.soton.comp1206.event.LinesClearedEvent;
 import uk.ac.soton.comp1206.event.NextPieceListener;
+import uk.ac.soton.comp1206.event.PiecePlacedEvent;
+import uk.ac.soton.comp1206.event.PiecesChangedEvent;
+import uk.ac.soton.comp1206.event.PlacementBlockedEvent;
+import uk.ac.soton.comp1206.event.TimerRestartedEvent;
 import uk.ac.soton.comp1206.scene.ScoresScene;
-import uk.ac.soton.comp1206.scene.SettingsScene;
+import uk.ac.soton.comp1206.utils.HashedWheelTimer;
 import uk.ac.soton.comp1206.utils.Multimedia;
 
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Random;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * The Game class handles the main logic, state and properties of the TetrECS game. Methods to manipulate the game state
- * and to handle actions made by the player should take place inside this class.
+ * The Game class handles the state and properties of the TetrECS game shown in the ChallengeScene. The rules
+ * themselves live in a {@link GameCore}; the Game passes the player's actions to it, and adds what the scene needs on
+ * top: bindable properties, the game timer, events and the high score.
+ * <p>
+ * Only the game thread changes the game. Clicks, key presses and timeouts are queued as {@link GameAction}s, and the
+ * game thread performs them in order. After each batch it publishes an immutable {@link GameSnapshot}. Once per frame
+ * the JavaFX thread takes the latest snapshot and brings the board and the properties up to date, so a burst of moves
+ * between two frames is shown as one.
+ * <p>
+ * What happens in the game is published as events on the game's {@link EventBus}, with the events from each action
+ * in one batch. The listener setters subscribe to these on the JavaFX frame, so listeners run just after the board
+ * they describe is shown.
  */
 public class Game {
 
     private static final Logger logger = LogManager.getLogger(Game.class);
 
+    /**
+     * Most actions performed before a snapshot is published, so a long backlog still shows progress
+     */
+    private static final int BATCH = 64;
+
+    /**
+     * The thread games are played on, unless a game is given its own executor
+     */
+    private static final Executor GAME_THREAD = Executors.newSingleThreadExecutor(task -> {
+        var thread = new Thread(task, "Game thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     /**
      * Number of rows
      */
@@ -43,24 +72,66 @@ public class Game {
     protected final int cols;
 
     /**
-     * The grid model linked to the game
+     * The rules and state of the game
+     */
+    protected final GameCore core;
+
+    /**
+     * The grid model linked to the game board. It is a copy of the core's grid, updated on the JavaFX thread.
      */
     protected final Grid grid;
 
     /**
-     * This will keep track of the current piece
+     * Runs the game loop when the current piece times out, shared with other games
+     */
+    private final HashedWheelTimer timer;
+
+    //timeout that will be used to schedule the game loop, created when the game starts
+    private HashedWheelTimer.Timeout timeout;
+
+    /**
+     * Runs the game thread's work. Tasks given to it run one at a time.
+     */
+    private final Executor executor;
+
+    /**
+     * Actions waiting for the game thread
+     */
+    private final ConcurrentLinkedQueue<GameAction> actions = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Set while the game thread has been asked to drain the queue
+     */
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    /**
+     * The latest snapshot published by the game thread
+     */
+    private final AtomicReference<GameSnapshot> latest = new AtomicReference<>();
+
+    /**
+     * Number of the last snapshot published, counted on the game thread
+     */
+    private long version;
+
+    /**
+     * Everything that happens in the game is published here
      */
-    protected GamePiece currentPiece;
+    protected final EventBus events = new EventBus();
 
     /**
-     * This will keep track of the following piece
+     * Published for every placement that clears lines, holding the core's own result
      */
-    protected GamePiece followingPiece;
+    private final LinesClearedEvent linesCleared;
 
-    private ScheduledExecutorService executor;
+    /**
+     * Listener calls waiting for the next JavaFX frame
+     */
+    private final ConcurrentLinkedQueue<Runnable> frameTasks = new ConcurrentLinkedQueue<>();
 
-    //future that will be used to schedule the game loop
-    private ScheduledFuture<?> future;
+    //Used on the JavaFX thread
+    private GameSnapshot shown;
+    private AnimationTimer pulse;
 
     public String getPlayerName() {
         return playerName;
@@ -70,14 +141,13 @@ public class Game {
 
 
     /*
-       listeners that handle the next piece, the lines cleared, the game loop
+       subscriptions of the listeners that handle the next piece, the lines cleared, the game loop
         and the termination of the game
      */
-    private NextPieceListener nextPieceListener;
-    private LineClearedListener lineClearedListener;
-    private GameLoopListener gameLooplistener;
-
-    private GameOverListener gameOverListener;
+    private EventBus.Subscription nextPieceListener;
+    private EventBus.Subscription lineClearedListener;
+    private EventBus.Subscription gameLooplistener;
+    private EventBus.Subscription gameOverListener;
 
     /**
      * Add bindable properties for the score, level,
@@ -98,37 +168,75 @@ public class Game {
 
 
     /**
-     * Create a new game with the specified rows and columns. Creates a corresponding grid model.
+     * Create a new game with the specified rows and columns, starting at level 0 with 3 lives.
      *
      * @param cols number of columns
      * @param rows number of rows
      */
     public Game(int cols, int rows) {
-        this.cols = cols;
-        this.rows = rows;
+        this(cols, rows, 0, 3);
+    }
 
-        //Create a new grid model to represent the game state
-        this.grid = new Grid(cols, rows);
+    /**
+     * Create a new game with the specified rows and columns, starting level and lives.
+     *
+     * @param cols  number of columns
+     * @param rows  number of rows
+     * @param level the level to start at
+     * @param lives the number of lives to start with
+     */
+    public Game(int cols, int rows, int level, int lives) {
+        this(new GameCore(cols, rows, level, lives, System.nanoTime()));
+    }
 
-        //Initialise the properties
-        this.score = new SimpleIntegerProperty(0);
-        this.level = new SimpleIntegerProperty(SettingsScene.speedLevel);
-        this.lives = new SimpleIntegerProperty(SettingsScene.healthPoint);
-        this.multiplier = new SimpleIntegerProperty(1);
-        this.followingPiece = spawnPiece();
-        this.executor = new ScheduledThreadPoolExecutor(1);
-        this.future = this.executor.schedule(this::gameLoop, getTimerDelay(), TimeUnit.MILLISECONDS);
+    /**
+     * Create a new game on top of the given core
+     *
+     * @param core the rules and state of the game
+     */
+    public Game(GameCore core) {
+        this(core, HashedWheelTimer.shared());
+    }
 
-        this.highestPlayer = new SimpleStringProperty();
-        this.highestScore = new SimpleIntegerProperty();
+    /**
+     * Create a new game on top of the given core, timed by the given timer
+     *
+     * @param core  the rules and state of the game
+     * @param timer runs the game loop when a piece times out
+     */
+    public Game(GameCore core, HashedWheelTimer timer) {
+        this(core, timer, GAME_THREAD, new Grid(core.getCols(), core.getRows()));
+    }
 
-        //get local high score
-        ArrayList<Pair<String, Integer>> pairs = ScoresScene.loadScores();
-        if (pairs.size() > 0) {
-            this.highestPlayer.set(pairs.get(0).getKey());
-            this.highestScore.set(pairs.get(0).getValue());
+    /**
+     * Create a new game on top of the given core
+     *
+     * @param core     the rules and state of the game
+     * @param timer    runs the game loop when a piece times out
+     * @param executor runs the game thread's work, one task at a time
+     * @param grid     the grid shown on the game board, or the core's own grid if it is only used on the game thread
+     */
+    protected Game(GameCore core, HashedWheelTimer timer, Executor executor, Grid grid) {
+        this.core = core;
+        this.linesCleared = new LinesClearedEvent(core.getLastClear());
+        this.timer = timer;
+        this.executor = executor;
+        this.cols = core.getCols();
+        this.rows = core.getRows();
+        this.grid = grid;
+        if (grid != core.getGrid()) {
+            grid.copyFrom(core.getGrid());
         }
 
+        //Initialise the properties
+        this.score = new SimpleIntegerProperty(core.getScore());
+        this.level = new SimpleIntegerProperty(core.getLevel());
+        this.lives = new SimpleIntegerProperty(core.getLives());
+        this.multiplier = new SimpleIntegerProperty(core.getMultiplier());
+
+        this.highestPlayer = new SimpleStringProperty();
+        this.highestScore = new SimpleIntegerProperty();
+        publish();
     }
 
 
@@ -138,40 +246,161 @@ public class Game {
      * the getTimerDelay function
      * When gameLoop fires (the timer reaches 0): lose a life, the current piece isdiscarded and the timer restarts.The multiplier is set back to 1.
      * The timer should be reset when a piece is played, to the new timer delay (whichmay have changed)
+     * <p>
+     * Runs on the game thread.
      */
     public void gameLoop() {
-        //when gameLoop fires
-        //lose a life
-        this.lives.set(this.lives.get() - 1);
+        var step = core.timeout();
         //if lives touch 0, the game is over
-        if (this.lives.get() == 0) {
-            Platform.runLater(() -> this.gameOverListener.gameOver(this));
+        if (step == GameCore.Step.GAME_OVER) {
+            fireGameOver();
+            return;
+        }
+        if (step != GameCore.Step.LIFE_LOST) {
             return;
-            //game over
         }
-        nextPiece();
-        //the multiplier is set back to 1
-        this.multiplier.set(1);
+        firePieces();
         long delay = getTimerDelay();
         //the timer restarts
-        this.future = this.executor.schedule(this::gameLoop, delay, TimeUnit.MILLISECONDS);
-        this.gameLooplistener.loop(delay);
+        this.timeout.reschedule(delay);
+        fireLoop(delay);
+    }
+
+    /**
+     * Called by the timer when the current piece times out. Queues the game loop for the game thread.
+     */
+    protected void onTimeout() {
+        submit(GameAction.TIMEOUT);
+    }
+
+    /**
+     * Check whether the current piece has timed out and the game loop hasn't restarted the timer yet
+     *
+     * @return true if the timer has run out
+     */
+    public boolean isTimedOut() {
+        return timeout != null && timeout.isExpired();
+    }
+
+    /**
+     * Queue an action for the game thread. Can be called from any thread.
+     *
+     * @param action the action
+     */
+    public void submit(GameAction action) {
+        actions.add(action);
+        if (draining.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Perform every queued action on the game thread, then publish one snapshot for all of them
+     */
+    private void drain() {
+        do {
+            GameAction action;
+            int performed = 0;
+            while ((action = actions.poll()) != null) {
+                //A timeout that was overtaken by a placement is out of date
+                if (action.getType() == GameAction.Type.TIMEOUT && !isTimedOut()) {
+                    continue;
+                }
+                try {
+                    perform(action);
+                } catch (RuntimeException e) {
+                    logger.error("Unable to perform {}", action, e);
+                }
+                if (++performed == BATCH) {
+                    publish();
+                    performed = 0;
+                }
+            }
+            publish();
+            draining.set(false);
+            //Something may have been queued after the last poll but before the flag was cleared
+        } while (!actions.isEmpty() && draining.compareAndSet(false, true));
+    }
+
+    /**
+     * Make a move in the game straight away. Must be called on the game thread. The events it causes are published as
+     * one batch.
+     *
+     * @param action the move to make
+     */
+    public void perform(GameAction action) {
+        events.runBatched(() -> {
+            switch (action.getType()) {
+                case PLACE -> placePiece(action.getX(), action.getY());
+                case ROTATE -> {
+                    core.rotate(action.getRotations());
+                    firePieces();
+                }
+                case SWAP -> {
+                    core.swap();
+                    firePieces();
+                    logger.info("Swapping Pieces");
+                }
+                case TIMEOUT -> gameLoop();
+            }
+        });
+    }
+
+    /**
+     * Get the event bus that everything happening in this game is published on
+     *
+     * @return the event bus
+     */
+    public EventBus getEvents() {
+        return events;
+    }
+
+    /**
+     * Where the listeners set on this game are called. For a game on screen, that is the next JavaFX frame.
+     *
+     * @return the executor
+     */
+    protected Executor getListenerExecutor() {
+        return frameTasks::add;
     }
 
     public void setNextPieceListener(NextPieceListener nextPieceListener) {
-        this.nextPieceListener = nextPieceListener;
+        close(this.nextPieceListener);
+        this.nextPieceListener = nextPieceListener == null ? null
+                : events.subscribe(PiecesChangedEvent.class, getListenerExecutor(),
+                        event -> nextPieceListener.nextPiece(event.current(), event.following()));
     }
 
     public void setLineClearedListener(LineClearedListener lineClearedListener) {
-        this.lineClearedListener = lineClearedListener;
+        close(this.lineClearedListener);
+        this.lineClearedListener = lineClearedListener == null ? null
+                : events.subscribe(LinesClearedEvent.class, getListenerExecutor(),
+                        event -> lineClearedListener.lineCleared(event.result()));
     }
 
     public void setGameLooplistener(GameLoopListener gameLooplistener) {
-        this.gameLooplistener = gameLooplistener;
+        close(this.gameLooplistener);
+        this.gameLooplistener = gameLooplistener == null ? null
+                : events.subscribe(TimerRestartedEvent.class, getListenerExecutor(),
+                        event -> gameLooplistener.loop(event.delay()));
     }
 
     public void setGameOverListener(GameOverListener gameOverListener) {
-        this.gameOverListener = gameOverListener;
+        close(this.gameOverListener);
+        this.gameOverListener = gameOverListener == null ? null
+                : events.subscribe(GameOverEvent.class, getListenerExecutor(),
+                        event -> gameOverListener.gameOver(event.game()));
+    }
+
+    /**
+     * Cancel the subscription of a listener being replaced or removed
+     *
+     * @param subscription the subscription, or null if there wasn't a listener
+     */
+    private static void close(EventBus.Subscription subscription) {
+        if (subscription != null) {
+            subscription.close();
+        }
     }
 
     /**
@@ -180,6 +409,9 @@ public class Game {
     public void start() {
         logger.info("Starting game");
         initialiseGame();
+        publish();
+        this.timeout = timer.schedule(this::onTimeout, getTimerDelay());
+        startPulse();
     }
 
     /**
@@ -187,8 +419,25 @@ public class Game {
      */
     public void stop() {
         logger.info("Stopping game");
-        this.future.cancel(true);
-        this.executor.shutdown();
+        if (this.timeout != null) {
+            this.timeout.cancel();
+        }
+        if (this.pulse != null) {
+            this.pulse.stop();
+        }
+    }
+
+    /**
+     * Start showing the latest snapshot on every JavaFX frame
+     */
+    protected void startPulse() {
+        pulse = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                pulse();
+            }
+        };
+        pulse.start();
     }
 
     /**
@@ -196,13 +445,18 @@ public class Game {
      */
     public void initialiseGame() {
         logger.info("Initialising game");
-        this.gameLooplistener.loop(getTimerDelay());
-        //When the game is initialised, spawn a new GamePiece and set it as the currentPiece
-        Multimedia.stopMusic();
-        Multimedia.playMusic("game.wav");
+        fireLoop(getTimerDelay());
+        Multimedia.playMusic("end.wav");
+
+        //get local high score
+        ArrayList<Pair<String, Integer>> pairs = ScoresScene.loadScores();
+        if (pairs.size() > 0) {
+            this.highestPlayer.set(pairs.get(0).getKey());
+            this.highestScore.set(pairs.get(0).getValue());
+        }
 
-        //Initializes two Piece
-        nextPiece();
+        //Show the first two pieces
+        firePieces();
     }
 
     /**
@@ -211,181 +465,154 @@ public class Game {
      * @param gameBlock the block that was clicked
      */
     public void blockClicked(GameBlock gameBlock) {
-        //Get the position of this block
-        int x = gameBlock.getX();
-        int y = gameBlock.getY();
-
-        //try to place the current piece at this position
-        if (grid.canPlayPiece(currentPiece, x, y)) {
-            //If the grid can play the piece, place it
-            grid.playPiece(currentPiece, x, y);
-            //Generate the next
-            nextPiece();
-            //clear the row and reset the blocks that are full
-            afterPiece();
-            Multimedia.playAudio("place.wav");
+        submit(GameAction.place(gameBlock.getX(), gameBlock.getY()));
+    }
+
+    /**
+     * Try to place the current piece centred on the given column and row. Must be called on the game thread.
+     *
+     * @param x column
+     * @param y row
+     * @return true if the piece was placed
+     */
+    public boolean placePiece(int x, int y) {
+        var piece = core.getCurrentPiece();
+        if (core.place(x, y) == GameCore.Step.PLACED) {
+            firePieces();
+
+            //Trigger fade out animation
+            if (core.getLastClear().getLines() > 0) {
+                fireLineCleared();
+            }
+
+            //reset the scheduler
+            this.timeout.reschedule(getTimerDelay());
+            fireLoop(getTimerDelay());
+            events.publish(new PiecePlacedEvent(piece, x, y));
+            return true;
         } else {// placement of the piece failed
             logger.info("Cannot place piece!");
-            Multimedia.playAudio("fail.wav");
+            events.publish(new PlacementBlockedEvent(piece, x, y));
+            return false;
         }
     }
 
     /**
-     * spawnPiece
-     * Create a new random GamePiece by calling GamePiece.createPiece with a
-     * random number between 0 and the number of pieces
-     * Tip: Create a Random object, and call nextInt to generate a random numberbetween 0 and a given number
-     *
-     * @return a new GamePiece
+     * rotateCurrentPiece method rotate the next piece
      */
-    public GamePiece spawnPiece() {
-        var random = new Random();
-        var randomPiece = random.nextInt(GamePiece.PIECES);
-
-        logger.info("Spawning piece: " + randomPiece);
+    public void rotateCurrentPiece(int times) {
+        submit(GameAction.rotate(times));
+    }
 
-        return GamePiece.createPiece(randomPiece);
+    /**
+     * swaps the current piece with the next one and vice versa
+     */
+    public void swapCurrentPiece() {
+        submit(GameAction.SWAP);
     }
 
     /**
-     * Replace the current piece with a following Piece
-     * Replace the following Piece with a new piece
+     * Tell subscribers that the game has ended
      */
-    public void nextPiece() {
-        currentPiece = followingPiece;
-        //creat a next piece
-        followingPiece = spawnPiece();
+    protected void fireGameOver() {
+        events.publish(new GameOverEvent(this));
+    }
 
-        //reset two Pieces
-        if (nextPieceListener != null) {
-            nextPieceListener.nextPiece(currentPiece, followingPiece);
-        }
-        logger.info("The next piece is: {}", followingPiece);
+    /**
+     * Tell subscribers that the timer has restarted
+     *
+     * @param delay the new delay in milliseconds
+     */
+    protected void fireLoop(long delay) {
+        events.publish(new TimerRestartedEvent(delay));
     }
 
     /**
-     * rotateCurrentPiece method rotate the next piece
+     * Tell subscribers about the current and following pieces
      */
-    public void rotateCurrentPiece(int times) {
-        currentPiece.rotate(times);
+    protected void firePieces() {
+        events.publish(new PiecesChangedEvent(core.getCurrentPiece(), core.getFollowingPiece()));
+        logger.debug("The next piece is: {}", core.getFollowingPiece());
     }
 
     /**
-     * swaps the current piece with the next one and vice versa
+     * Tell subscribers which lines were cleared. The same event is published every time, so nothing is allocated
+     * unless a subscriber runs after this returns, such as the line cleared listener; those get a copy.
      */
-    public void swapCurrentPiece() {
-        GamePiece piece = getCurrentPiece();
-        currentPiece = getFollowingPiece();
-        followingPiece = piece;
-        logger.info("Swapping Pieces");
-    }
-
-    /**
-     * afterPiece
-     * To be called after playing a piece
-     * This should clear any full vertical/horizontal lines that have been made
-     * You will need to iterate through vertical and horizontal lines, keeping
-     * track of how many lines are to be cleared and which blocks will need to be reset
-     * Any horizontal and vertical lines that have just been made should be cleared(including intersecting lines - multiple lines may be cleared at once).
-     */
-    public void afterPiece() {
-        var hashSet = new HashSet<GameBlockCoordinate>();
-        //Iterate through the grid
-        //we first iterate through the rows,find a row that is full,then we iterate through the columns to find the blocks that are full
-        //we store the coordinates of the blocks that are full in a hashset
-        //after we have iterated through the columns,we clear the row and reset the blocks that are full
-
-        int clearedLine = 0;
-        for (int i = 0; i < rows; i++) {
-            var fullRow = true;
-            for (int j = 0; j < cols; j++) {
-                if (grid.get(i, j) == 0) {
-                    fullRow = false;
-                    break;
-                }
-            }
-            if (fullRow) {
-                clearedLine++;
-                for (int j = 0; j < cols; j++) {
-                    hashSet.add(new GameBlockCoordinate(i, j));
-                }
-            }
-        }
+    private void fireLineCleared() {
+        events.publish(linesCleared);
+    }
 
-        for (int i = 0; i < cols; i++) {
-            var fullCol = true;
-            for (int j = 0; j < rows; j++) {
-                if (grid.get(j, i) == 0) {
-                    fullCol = false;
-                    break;
-                }
-            }
-            if (fullCol) {
-                clearedLine++;
-                for (int j = 0; j < rows; j++) {
-                    hashSet.add(new GameBlockCoordinate(j, i));
-                }
-            }
-        }
+    /**
+     * Publish a snapshot of the game as it is now
+     */
+    protected void publish() {
+        latest.set(new GameSnapshot(++version, core));
+    }
 
-        //clear the row and reset the blocks that are full
-        for (var coordinate : hashSet) {
-            grid.set(coordinate.getX(), coordinate.getY(), 0);
-        }
+    /**
+     * Get the latest snapshot published by the game thread. Can be called from any thread.
+     *
+     * @return the snapshot
+     */
+    public GameSnapshot getSnapshot() {
+        return latest.get();
+    }
 
-        //Trigger fade out animation
-        if (lineClearedListener != null) {
-            lineClearedListener.lineCleared(hashSet);
+    /**
+     * Bring the board and properties up to date with the latest snapshot, if it hasn't been shown yet, then call the
+     * listeners for what happened since the last frame. Called on the JavaFX thread once per frame.
+     */
+    public void pulse() {
+        var snapshot = latest.get();
+        if (snapshot != shown) {
+            shown = snapshot;
+            snapshot.copyTo(grid);
+            score.set(snapshot.getScore());
+            level.set(snapshot.getLevel());
+            lives.set(snapshot.getLives());
+            multiplier.set(snapshot.getMultiplier());
+            updateHighScore();
         }
 
-        score(clearedLine, hashSet.size());
-
-        //The multiplier is increased by 1 if the next piece also clears lines. It is increased after the score for the cleared set of lines is applied
-        //The multiplier is reset to 1 when a piece is placed that doesn't clear any lines
-        if (clearedLine == 0) {
-            multiplier.set(1);
-        } else {
-            multiplier.set(multiplier.get() + 1);
+        Runnable task;
+        while ((task = frameTasks.poll()) != null) {
+            task.run();
         }
+    }
 
-        //The level should increase per 1000 points (at the start, you begin at level 0.After
-        //1000 points, you reach level 1.At 3000 points you would be level 3)
-        level.set(score.get() / 1000);
-
-        //reset the scheduler
-        this.future.cancel(false);
-        this.future = this.executor.schedule(this::gameLoop, getTimerDelay(), TimeUnit.MILLISECONDS);
-        this.gameLooplistener.loop(getTimerDelay());
+    /**
+     * Copy the score, level, lives and multiplier from the core into the bindable properties, and keep the high score
+     * up to date. Only for games whose properties are used on the game thread.
+     */
+    protected void sync() {
+        score.set(core.getScore());
+        level.set(core.getLevel());
+        lives.set(core.getLives());
+        multiplier.set(core.getMultiplier());
+        updateHighScore();
     }
 
     /**
-     * score method which takes the number of lines and numberof blocks
-     * and call it in afterPiece. It should add a score based on the following formula:
-     * number of lines * number of grid blocks cleared * 10 * the current multiplier
-     * lf no lines are cleared, no score is added
-     * For example, if a piece was added that cleared 2 intersecting lines,
-     * 2 lines would becleared and 9 blocks would be cleared (because 1 block appears
-     * in two lines but iscounted only once) - this would be 180 points with a 1 times multiplier
-     * (comparedto 200 points if 2 non-intersectina lines were cleared at the same time)
-     *
-     * @param lines  number of lines cleared
-     * @param blocks number of blocks cleared
+     * Compare the score with the high score
      */
-    public void score(int lines, int blocks) {
-        if (lines == 0) {
-            return;
-        }
-        var score = lines * blocks * 10 * multiplier.get();
-        this.score.set(this.score.get() + score);
-        //compare with the high score
+    private void updateHighScore() {
         if (this.playerName == null) {
             this.playerName = "Player";
         }
-        if (this.score.get() > highestScore.get()) {
-            highestScore.set(this.score.get());
+        if (score.get() > highestScore.get()) {
+            highestScore.set(score.get());
             highestPlayer.set(this.playerName);
         }
+    }
 
+    /**
+     * Get the rules and state of this game
+     *
+     * @return the game core
+     */
+    public GameCore getCore() {
+        return core;
     }
 
     /**
@@ -417,35 +644,31 @@ public class Game {
 
 
     /**
-     * Get the following piece of the game
+     * Get the following piece of the game. Only up to date on the game thread; the UI should use the snapshot.
      *
      * @return teh following piece
      */
     public GamePiece getFollowingPiece() {
-        return followingPiece;
+        return core.getFollowingPiece();
     }
 
     /**
-     * Get the current piece of the game
+     * Get the current piece of the game. Only up to date on the game thread; the UI should use the snapshot.
      *
      * @return the current piece
      */
     public GamePiece getCurrentPiece() {
-        return currentPiece;
+        return core.getCurrentPiece();
     }
 
 
     /**
-     * Calculate the delay at the maximum of either 2500 milliseconds or 12000 - 500*the current level
-     * So it'll start at 12000, then drop to 11500, then 11000 and keep on going
-     * until itreaches 2500 at which point it won't drop any lower
+     * Get the delay before the current piece times out, which depends on the level
+     *
+     * @return the delay in milliseconds
      */
     public long getTimerDelay() {
-        var delay = 12000 - 500 * level.get();
-        if (delay < 2500) {
-            delay = 2500;
-        }
-        return delay;
+        return core.getTimerDelay();
     }
 
 
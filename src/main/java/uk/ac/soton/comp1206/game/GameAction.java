@@ -0,0 +1,145 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A GameAction is a single move made in a game: placing the current piece, rotating it, swapping it with the following
+ * piece, or the timer running out. Actions are passed to {@link GameCore#step(GameAction)}.
+ * <p>
+ * Actions are immutable. Everything except placement is a shared constant, and placements are cached per position,
+ * so stepping a game never allocates an action.
+ */
+public class GameAction {
+
+    /**
+     * The kinds of action that can be made
+     */
+    public enum Type {
+        PLACE, ROTATE, SWAP, TIMEOUT
+    }
+
+    /**
+     * Rotate the current piece once to the right
+     */
+    public static final GameAction ROTATE_RIGHT = new GameAction(Type.ROTATE, 0, 0, 1);
+
+    /**
+     * Rotate the current piece once to the left
+     */
+    public static final GameAction ROTATE_LEFT = new GameAction(Type.ROTATE, 0, 0, 3);
+
+    /**
+     * Swap the current piece with the following piece
+     */
+    public static final GameAction SWAP = new GameAction(Type.SWAP, 0, 0, 0);
+
+    /**
+     * The timer ran out before a piece was played
+     */
+    public static final GameAction TIMEOUT = new GameAction(Type.TIMEOUT, 0, 0, 0);
+
+    /**
+     * Rotate actions, indexed by number of rotations
+     */
+    private static final GameAction[] ROTATIONS = {
+            new GameAction(Type.ROTATE, 0, 0, 0), ROTATE_RIGHT, new GameAction(Type.ROTATE, 0, 0, 2), ROTATE_LEFT
+    };
+
+    /**
+     * Largest column and row with a cached placement action
+     */
+    private static final int CACHED = 16;
+
+    /**
+     * Cached placement actions, indexed y * CACHED + x
+     */
+    private static final GameAction[] PLACEMENTS = new GameAction[CACHED * CACHED];
+
+    static {
+        for (int y = 0; y < CACHED; y++) {
+            for (int x = 0; x < CACHED; x++) {
+                PLACEMENTS[y * CACHED + x] = new GameAction(Type.PLACE, x, y, 0);
+            }
+        }
+    }
+
+    private final Type type;
+    private final int x;
+    private final int y;
+    private final int rotations;
+
+    private GameAction(Type type, int x, int y, int rotations) {
+        this.type = type;
+        this.x = x;
+        this.y = y;
+        this.rotations = rotations;
+    }
+
+    /**
+     * Get the action for placing the current piece centred on the given column and row
+     *
+     * @param x column
+     * @param y row
+     * @return the placement action
+     */
+    public static GameAction place(int x, int y) {
+        if (x >= 0 && x < CACHED && y >= 0 && y < CACHED) {
+            return PLACEMENTS[y * CACHED + x];
+        }
+        return new GameAction(Type.PLACE, x, y, 0);
+    }
+
+    /**
+     * Get the action for rotating the current piece a number of times to the right
+     *
+     * @param rotations number of rotations
+     * @return the rotate action
+     */
+    public static GameAction rotate(int rotations) {
+        return ROTATIONS[rotations & 3];
+    }
+
+    /**
+     * Get the type of this action
+     *
+     * @return action type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Get the column of a placement
+     *
+     * @return column
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Get the row of a placement
+     *
+     * @return row
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Get the number of rotations to the right of a rotate action
+     *
+     * @return rotations
+     */
+    public int getRotations() {
+        return rotations;
+    }
+
+    @Override
+    public String toString() {
+        return switch (type) {
+            case PLACE -> "PLACE " + x + "," + y;
+            case ROTATE -> "ROTATE " + rotations;
+            default -> type.name();
+        };
+    }
+
+}
@@ -0,0 +1,371 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * The GameCore holds the rules of TetrECS: placing pieces, clearing lines, scoring, the multiplier, levels and lives.
+ * <p>
+ * It is plain Java with no timers, sound, files or UI thread, so games can be simulated at CPU speed by bots, tests and
+ * servers. It is deterministic: two cores created with the same size, settings and seed that are given the same
+ * actions end up in the same state. The Game class adapts a GameCore to the JavaFX scenes.
+ * <p>
+ * A GameCore is not thread safe, and should only be used by one thread at a time.
+ */
+public class GameCore {
+
+    /**
+     * The result of a single step of the game
+     */
+    public enum Step {
+        /**
+         * The current piece was placed, and the next piece has been drawn
+         */
+        PLACED,
+        /**
+         * The current piece can't be placed there
+         */
+        BLOCKED,
+        /**
+         * The current piece was rotated
+         */
+        ROTATED,
+        /**
+         * The current and following pieces were swapped
+         */
+        SWAPPED,
+        /**
+         * The timer ran out, a life was lost and the current piece was discarded
+         */
+        LIFE_LOST,
+        /**
+         * The last life was lost, the game is over
+         */
+        GAME_OVER,
+        /**
+         * The game is already over, nothing happened
+         */
+        IGNORED
+    }
+
+    /**
+     * Number of rows
+     */
+    private final int rows;
+
+    /**
+     * Number of columns
+     */
+    private final int cols;
+
+    /**
+     * The grid model of the board
+     */
+    private final Grid grid;
+
+    /**
+     * Decides which piece comes next
+     */
+    private final PieceSource pieces;
+
+    /**
+     * The lines cleared by the last piece played, reused for every placement
+     */
+    private final ClearResult clearResult = new ClearResult();
+
+    private GamePiece currentPiece;
+
+    private GamePiece followingPiece;
+
+    private int score;
+
+    private int level;
+
+    private int lives;
+
+    private int multiplier = 1;
+
+    private boolean over;
+
+    /**
+     * Create a new game core with the specified size and settings
+     *
+     * @param cols  number of columns
+     * @param rows  number of rows
+     * @param level the level to start at
+     * @param lives the number of lives to start with
+     * @param seed  the seed used to choose pieces
+     */
+    public GameCore(int cols, int rows, int level, int lives, long seed) {
+        this(cols, rows, level, lives, new UniformPieceSource(seed, 3));
+    }
+
+    /**
+     * Create a new game core with the specified size and settings, taking its pieces from the given source
+     *
+     * @param cols   number of columns
+     * @param rows   number of rows
+     * @param level  the level to start at
+     * @param lives  the number of lives to start with
+     * @param pieces where the pieces come from
+     */
+    public GameCore(int cols, int rows, int level, int lives, PieceSource pieces) {
+        this.cols = cols;
+        this.rows = rows;
+        this.grid = new Grid(cols, rows);
+        this.level = level;
+        this.lives = lives;
+        this.pieces = pieces;
+
+        //Draw the first two pieces
+        this.followingPiece = spawnPiece();
+        nextPiece();
+    }
+
+    /**
+     * Make a single move in the game
+     *
+     * @param action the move to make
+     * @return what happened
+     */
+    public Step step(GameAction action) {
+        return switch (action.getType()) {
+            case PLACE -> place(action.getX(), action.getY());
+            case ROTATE -> rotate(action.getRotations());
+            case SWAP -> swap();
+            case TIMEOUT -> timeout();
+        };
+    }
+
+    /**
+     * Place the current piece centred on the given column and row, clear any lines it completes and score them
+     *
+     * @param x column
+     * @param y row
+     * @return PLACED, BLOCKED if the piece doesn't fit there, or IGNORED if the game is over
+     */
+    public Step place(int x, int y) {
+        if (over) {
+            return Step.IGNORED;
+        }
+        var piece = currentPiece;
+        if (!grid.canPlayPiece(piece, x, y)) {
+            return Step.BLOCKED;
+        }
+        //play the piece and clear the lines that are full, as one change to the grid
+        grid.update(board -> {
+            board.playPiece(piece, x, y);
+            board.clearLines(piece, x, y, clearResult);
+        });
+        nextPiece();
+
+        int lines = clearResult.getLines();
+        score(lines, clearResult.getBlocks());
+
+        //The multiplier is increased by 1 if the next piece also clears lines. It is increased after the score for the cleared set of lines is applied
+        //The multiplier is reset to 1 when a piece is placed that doesn't clear any lines
+        if (lines == 0) {
+            multiplier = 1;
+        } else {
+            multiplier++;
+        }
+
+        //The level should increase per 1000 points (at the start, you begin at level 0.After
+        //1000 points, you reach level 1.At 3000 points you would be level 3)
+        level = score / 1000;
+        return Step.PLACED;
+    }
+
+    /**
+     * Rotate the current piece a number of times to the right
+     *
+     * @param rotations number of rotations
+     * @return ROTATED, or IGNORED if the game is over
+     */
+    public Step rotate(int rotations) {
+        if (over) {
+            return Step.IGNORED;
+        }
+        currentPiece = currentPiece.rotate(rotations);
+        return Step.ROTATED;
+    }
+
+    /**
+     * Swap the current piece with the following piece
+     *
+     * @return SWAPPED, or IGNORED if the game is over
+     */
+    public Step swap() {
+        if (over) {
+            return Step.IGNORED;
+        }
+        var piece = currentPiece;
+        currentPiece = followingPiece;
+        followingPiece = piece;
+        return Step.SWAPPED;
+    }
+
+    /**
+     * The timer ran out: lose a life, discard the current piece and set the multiplier back to 1
+     *
+     * @return LIFE_LOST, GAME_OVER if that was the last life, or IGNORED if the game is already over
+     */
+    public Step timeout() {
+        if (over) {
+            return Step.IGNORED;
+        }
+        lives--;
+        if (lives <= 0) {
+            over = true;
+            return Step.GAME_OVER;
+        }
+        nextPiece();
+        multiplier = 1;
+        return Step.LIFE_LOST;
+    }
+
+    /**
+     * Add a score based on the formula:
+     * number of lines * number of grid blocks cleared * 10 * the current multiplier
+     * lf no lines are cleared, no score is added
+     * For example, if a piece was added that cleared 2 intersecting lines, 2 lines would be cleared and 9 blocks would
+     * be cleared (because 1 block appears in two lines but is counted only once) - this would be 180 points with a 1
+     * times multiplier (compared to 200 points if 2 non-intersecting lines were cleared at the same time)
+     *
+     * @param lines  number of lines cleared
+     * @param blocks number of blocks cleared
+     * @return the points scored
+     */
+    public int score(int lines, int blocks) {
+        if (lines == 0) {
+            return 0;
+        }
+        var points = lines * blocks * 10 * multiplier;
+        score += points;
+        return points;
+    }
+
+    /**
+     * Take the next piece from the piece source
+     *
+     * @return the next GamePiece
+     */
+    public GamePiece spawnPiece() {
+        return pieces.next();
+    }
+
+    /**
+     * Replace the current piece with the following piece, and the following piece with a new piece
+     */
+    private void nextPiece() {
+        currentPiece = followingPiece;
+        followingPiece = spawnPiece();
+    }
+
+    /**
+     * Calculate the delay at the maximum of either 2500 milliseconds or 12000 - 500*the current level
+     * So it'll start at 12000, then drop to 11500, then 11000 and keep on going
+     * until itreaches 2500 at which point it won't drop any lower
+     *
+     * @return the delay in milliseconds
+     */
+    public long getTimerDelay() {
+        return Math.max(2500, 12000 - 500L * level);
+    }
+
+    /**
+     * Get the grid model representing the state of the board
+     *
+     * @return game grid model
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Get the lines cleared by the last piece played. Only valid until the next placement.
+     *
+     * @return the last clear
+     */
+    public ClearResult getLastClear() {
+        return clearResult;
+    }
+
+    /**
+     * Get the number of columns in this game
+     *
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows in this game
+     *
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the current piece of the game
+     *
+     * @return the current piece
+     */
+    public GamePiece getCurrentPiece() {
+        return currentPiece;
+    }
+
+    /**
+     * Get the following piece of the game
+     *
+     * @return the following piece
+     */
+    public GamePiece getFollowingPiece() {
+        return followingPiece;
+    }
+
+    /**
+     * Look at a piece coming after the following piece, without taking it
+     *
+     * @param ahead how far ahead to look, 0 is the piece after the following piece
+     * @return the piece, or null if it isn't known yet
+     */
+    public GamePiece peekPiece(int ahead) {
+        return pieces.peek(ahead);
+    }
+
+    /**
+     * Get where the pieces of this game come from
+     *
+     * @return the piece source
+     */
+    public PieceSource getPieceSource() {
+        return pieces;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getLives() {
+        return lives;
+    }
+
+    public int getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * Check whether the game has ended
+     *
+     * @return true once the last life has been lost
+     */
+    public boolean isOver() {
+        return over;
+    }
+
+}
@@ -5,6 +5,9 @@ package uk.ac.soton.comp1206.game;
  *
  * The GamePiece class also contains a factory for producing a GamePiece of a particular shape, as specified by it's
  * number.
+ *
+ * GamePieces are immutable flyweights. Every piece in every rotation is built once when the class is loaded, and the
+ * factory and the rotate methods just hand back entries from that table, so nothing is allocated while playing.
  */
 public class GamePiece {
 
@@ -14,120 +17,126 @@ public class GamePiece {
     public static final int PIECES = 15;
 
     /**
-     * The 2D grid representation of the shape of this piece
+     * The number of distinct rotations of a piece
      */
-    private int[][] blocks;
+    public static final int ROTATIONS = 4;
 
     /**
-     * The value of this piece
+     * Names of the pieces, indexed by piece number
      */
-    private final int value;
+    private static final String[] NAMES = {
+            "Line", "C", "Plus", "Dot", "Square", "L", "J", "S", "Z", "T", "X", "Corner", "Inverse Corner",
+            "Diagonal", "Double"
+    };
 
     /**
-     * The name of this piece
+     * Shapes of the pieces in their starting rotation, indexed by piece number
      */
-    private final String name;
-
-    /**
-     * Create a new GamePiece of the specified piece number
-     * @param piece piece number
-     * @return the created GamePiece
-     */
-    public static GamePiece createPiece(int piece) {
-        switch (piece) {
+    private static final int[][][] SHAPES = {
             //Line
-            case 0 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {0, 0, 0}};
-                return new GamePiece("Line", blocks, 1);
-            }
-
+            {{0, 0, 0}, {1, 1, 1}, {0, 0, 0}},
             //C
-            case 1 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {1, 0, 1}};
-                return new GamePiece("C", blocks, 2);
-            }
-
+            {{0, 0, 0}, {1, 1, 1}, {1, 0, 1}},
             //Plus
-            case 2 -> {
-                int[][] blocks = {{0, 1, 0}, {1, 1, 1}, {0, 1, 0}};
-                return new GamePiece("Plus", blocks, 3);
-            }
-
+            {{0, 1, 0}, {1, 1, 1}, {0, 1, 0}},
             //Dot
-            case 3 -> {
-                int[][] blocks = {{0, 0, 0}, {0, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Dot", blocks, 4);
-            }
-
+            {{0, 0, 0}, {0, 1, 0}, {0, 0, 0}},
             //Square
-            case 4 -> {
-                int[][] blocks = {{1, 1, 0}, {1, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Square", blocks, 5);
-            }
-
+            {{1, 1, 0}, {1, 1, 0}, {0, 0, 0}},
             //L
-            case 5 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {0, 0, 1}};
-                return new GamePiece("L", blocks, 6);
-            }
-
+            {{0, 0, 0}, {1, 1, 1}, {0, 0, 1}},
             //J
-            case 6 -> {
-                int[][] blocks = {{0, 0, 1}, {1, 1, 1}, {0, 0, 0}};
-                return new GamePiece("J", blocks, 7);
-            }
-
+            {{0, 0, 1}, {1, 1, 1}, {0, 0, 0}},
             //S
-            case 7 -> {
-                int[][] blocks = {{0, 0, 0}, {0, 1, 1}, {1, 1, 0}};
-                return new GamePiece("S", blocks, 8);
-            }
-
+            {{0, 0, 0}, {0, 1, 1}, {1, 1, 0}},
             //Z
-            case 8 -> {
-                int[][] blocks = {{1, 1, 0}, {0, 1, 1}, {0, 0, 0}};
-                return new GamePiece("Z", blocks, 9);
-            }
-
+            {{1, 1, 0}, {0, 1, 1}, {0, 0, 0}},
             //T
-            case 9 -> {
-                int[][] blocks = {{1, 0, 0}, {1, 1, 0}, {1, 0, 0}};
-                return new GamePiece("T", blocks, 10);
-            }
-
+            {{1, 0, 0}, {1, 1, 0}, {1, 0, 0}},
             //X
-            case 10 -> {
-                int[][] blocks = {{1, 0, 1}, {0, 1, 0}, {1, 0, 1}};
-                return new GamePiece("X", blocks, 11);
-            }
-
+            {{1, 0, 1}, {0, 1, 0}, {1, 0, 1}},
             //Corner
-            case 11 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 0}, {1, 0, 0}};
-                return new GamePiece("Corner", blocks, 12);
-            }
-
+            {{0, 0, 0}, {1, 1, 0}, {1, 0, 0}},
             //Inverse Corner
-            case 12 -> {
-                int[][] blocks = {{1, 0, 0}, {1, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Inverse Corner", blocks, 13);
-            }
-
+            {{1, 0, 0}, {1, 1, 0}, {0, 0, 0}},
             //Diagonal
-            case 13 -> {
-                int[][] blocks = {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}};
-                return new GamePiece("Diagonal", blocks, 14);
-            }
-
+            {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}},
             //Double
-            case 14 -> {
-                int[][] blocks = {{0, 1, 0}, {0, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Double", blocks, 15);
+            {{0, 1, 0}, {0, 1, 0}, {0, 0, 0}}
+    };
+
+    /**
+     * Every piece in every rotation, indexed by piece number * ROTATIONS + rotation
+     */
+    private static final GamePiece[] TABLE = new GamePiece[PIECES * ROTATIONS];
+
+    static {
+        for (int piece = 0; piece < PIECES; piece++) {
+            var blocks = SHAPES[piece];
+            for (int rotation = 0; rotation < ROTATIONS; rotation++) {
+                TABLE[piece * ROTATIONS + rotation] = new GamePiece(NAMES[piece], blocks, piece, rotation);
+                blocks = rotate(blocks);
             }
         }
+    }
+
+    /**
+     * The 2D grid representation of the shape of this piece
+     */
+    private final int[][] blocks;
+
+    /**
+     * The value of this piece
+     */
+    private final int value;
+
+    /**
+     * The name of this piece
+     */
+    private final String name;
+
+    /**
+     * The piece number
+     */
+    private final int piece;
+
+    /**
+     * The rotation of this piece, 0 to 3
+     */
+    private final int rotation;
+
+    /**
+     * The lowest rotation of this piece with the same shape
+     */
+    private final int canonicalRotation;
+
+    /**
+     * The shape as a 9-bit mask, bit {@code j * 3 + i} set when blocks[i][j] is filled
+     */
+    private final int mask;
+
+    /**
+     * Column offsets from the centre of each block in this piece
+     */
+    private final int[] offsetX;
+
+    /**
+     * Row offsets from the centre of each block in this piece
+     */
+    private final int[] offsetY;
+
+    /**
+     * Bounding box of the blocks, as offsets from the centre
+     */
+    private final int minX, maxX, minY, maxY;
 
-        //Not a valid piece number
-        throw new IndexOutOfBoundsException("No such piece: " + piece);
+    /**
+     * Create a new GamePiece of the specified piece number
+     * @param piece piece number
+     * @return the created GamePiece
+     */
+    public static GamePiece createPiece(int piece) {
+        return createPiece(piece, 0);
     }
 
     /**
@@ -137,30 +146,70 @@ public class GamePiece {
      * @return the created GamePiece
      */
     public static GamePiece createPiece(int piece, int rotation) {
-        var newPiece = createPiece(piece);
-
-        newPiece.rotate(rotation);
-        return newPiece;
+        if (piece < 0 || piece >= PIECES) {
+            //Not a valid piece number
+            throw new IndexOutOfBoundsException("No such piece: " + piece);
+        }
+        return TABLE[piece * ROTATIONS + (rotation & 3)];
     }
 
     /**
-     * Create a new GamePiece with the given name, block makeup and value. Should not be called directly, only via the
-     * factory.
+     * Create a new GamePiece with the given name, block makeup, number and rotation. Should not be called directly,
+     * only when building the table.
      * @param name name of the piece
-     * @param blocks block makeup of the piece
-     * @param value the value of this piece
+     * @param shape block makeup of the piece, 1 for filled
+     * @param piece the number of this piece
+     * @param rotation the rotation of this piece
      */
-    private GamePiece(String name, int[][] blocks, int value) {
+    private GamePiece(String name, int[][] shape, int piece, int rotation) {
         this.name = name;
-        this.blocks = blocks;
-        this.value = value;
+        this.piece = piece;
+        this.rotation = rotation;
+        this.value = piece + 1;
+
         //Use the shape of the block to create a grid with either 0 (empty) or the value of this shape for each block.
-        for(int x = 0; x < blocks.length; x++) {
-            for (int y = 0; y < blocks[x].length; y++) {
-                if(blocks[x][y] == 0) continue;
+        this.blocks = new int[3][3];
+        int mask = 0, count = 0;
+        for (int x = 0; x < 3; x++) {
+            for (int y = 0; y < 3; y++) {
+                if (shape[x][y] == 0) continue;
                 blocks[x][y] = value;
+                mask |= 1 << (y * 3 + x);
+                count++;
             }
         }
+        this.mask = mask;
+
+        //Offsets of each block from the centre, row by row
+        this.offsetX = new int[count];
+        this.offsetY = new int[count];
+        int minX = 1, maxX = -1, minY = 1, maxY = -1, n = 0;
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 3; x++) {
+                if (blocks[x][y] == 0) continue;
+                offsetX[n] = x - 1;
+                offsetY[n] = y - 1;
+                n++;
+                minX = Math.min(minX, x - 1);
+                maxX = Math.max(maxX, x - 1);
+                minY = Math.min(minY, y - 1);
+                maxY = Math.max(maxY, y - 1);
+            }
+        }
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+
+        //Earlier rotations of this piece are already in the table
+        int canonical = rotation;
+        for (int r = 0; r < rotation; r++) {
+            if (TABLE[piece * ROTATIONS + r].mask == mask) {
+                canonical = r;
+                break;
+            }
+        }
+        this.canonicalRotation = canonical;
     }
 
     /**
@@ -172,7 +221,114 @@ public class GamePiece {
     }
 
     /**
-     * Get the block makeup of this piece
+     * Get the piece number of this piece
+     * @return piece number
+     */
+    public int getPiece() {
+        return piece;
+    }
+
+    /**
+     * Get the rotation of this piece
+     * @return rotation, 0 to 3
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Get the lowest rotation which has the same shape as this one. Plus, Dot and X are the same in every rotation.
+     * @return canonical rotation
+     */
+    public int getCanonicalRotation() {
+        return canonicalRotation;
+    }
+
+    /**
+     * Get an id which is shared by every rotation of a piece that has the same shape
+     * @return canonical id, piece number * ROTATIONS + canonical rotation
+     */
+    public int getCanonicalId() {
+        return piece * ROTATIONS + canonicalRotation;
+    }
+
+    /**
+     * Get the shape of this piece as a 9-bit mask, bit {@code y * 3 + x} set when the block at x, y is filled
+     * @return shape mask
+     */
+    public int getMask() {
+        return mask;
+    }
+
+    /**
+     * Get one row of the shape as a 3-bit mask, bit x set when the block at x is filled
+     * @param y the row of the piece, 0 to 2
+     * @return row mask
+     */
+    public int getRowMask(int y) {
+        return (mask >>> (y * 3)) & 0b111;
+    }
+
+    /**
+     * Get the number of blocks in this piece
+     * @return block count
+     */
+    public int size() {
+        return offsetX.length;
+    }
+
+    /**
+     * Get the column offset of a block from the centre of the piece
+     * @param block the block, 0 to size() - 1
+     * @return column offset, -1 to 1
+     */
+    public int getOffsetX(int block) {
+        return offsetX[block];
+    }
+
+    /**
+     * Get the row offset of a block from the centre of the piece
+     * @param block the block, 0 to size() - 1
+     * @return row offset, -1 to 1
+     */
+    public int getOffsetY(int block) {
+        return offsetY[block];
+    }
+
+    /**
+     * Get the leftmost column offset of this piece
+     * @return offset, -1 to 1
+     */
+    public int getMinX() {
+        return minX;
+    }
+
+    /**
+     * Get the rightmost column offset of this piece
+     * @return offset, -1 to 1
+     */
+    public int getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * Get the topmost row offset of this piece
+     * @return offset, -1 to 1
+     */
+    public int getMinY() {
+        return minY;
+    }
+
+    /**
+     * Get the bottom row offset of this piece
+     * @return offset, -1 to 1
+     */
+    public int getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * Get the block makeup of this piece. The array is shared between every user of the piece and must not be changed.
      * @return 2D grid of the blocks representing the piece shape
      */
     public int[][] getBlocks() {
@@ -180,20 +336,29 @@ public class GamePiece {
     }
 
     /**
-     * Rotate this piece the given number of rotations
+     * Get this piece rotated the given number of rotations
      * @param rotations number of rotations
+     * @return the rotated piece
      */
-    public void rotate(int rotations) {
-        for(int rotated = 0; rotated < rotations; rotated ++) {
-            rotate();
-        }
+    public GamePiece rotate(int rotations) {
+        return TABLE[piece * ROTATIONS + ((rotation + rotations) & 3)];
+    }
+
+    /**
+     * Get this piece rotated exactly once
+     * @return the rotated piece
+     */
+    public GamePiece rotate() {
+        return rotate(1);
     }
 
     /**
-     * Rotate this piece exactly once by rotating it's 3x3 grid
+     * Rotate a 3x3 grid exactly once. Only used when building the table.
+     * @param blocks the grid to rotate
+     * @return a new rotated grid
      */
-    public void rotate() {
-        int[][] rotated = new int[blocks.length][blocks[0].length];
+    private static int[][] rotate(int[][] blocks) {
+        int[][] rotated = new int[3][3];
         rotated[2][0] = blocks[0][0];
         rotated[1][0] = blocks[0][1];
         rotated[0][0] = blocks[0][2];
@@ -206,7 +371,7 @@ public class GamePiece {
         rotated[1][2] = blocks[2][1];
         rotated[0][2] = blocks[2][2];
 
-        blocks = rotated;
+        return rotated;
     }
 
 
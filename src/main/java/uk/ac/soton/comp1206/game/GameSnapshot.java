@@ -0,0 +1,101 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A GameSnapshot is an immutable copy of the state of a game at one moment, published by the game thread for the UI to
+ * read.
+ */
+public final class GameSnapshot {
+
+    private final long version;
+    private final int cols;
+    private final int rows;
+    private final long[] cells;
+    private final GamePiece currentPiece;
+    private final GamePiece followingPiece;
+    private final int score;
+    private final int level;
+    private final int lives;
+    private final int multiplier;
+    private final boolean over;
+
+    GameSnapshot(long version, GameCore core) {
+        this.version = version;
+        this.cols = core.getCols();
+        this.rows = core.getRows();
+        this.cells = core.getGrid().getCells();
+        this.currentPiece = core.getCurrentPiece();
+        this.followingPiece = core.getFollowingPiece();
+        this.score = core.getScore();
+        this.level = core.getLevel();
+        this.lives = core.getLives();
+        this.multiplier = core.getMultiplier();
+        this.over = core.isOver();
+    }
+
+    /**
+     * Get the number of this snapshot. Each snapshot published by a game has a higher version than the last.
+     *
+     * @return version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the value of a cell
+     *
+     * @param x column
+     * @param y row
+     * @return the value, 0 for empty
+     */
+    public int get(int x, int y) {
+        int index = y * cols + x;
+        return (int) (cells[index >>> 4] >>> ((index & 15) << 2)) & 0xF;
+    }
+
+    /**
+     * Copy the board into a grid of the same size, writing only the cells that differ
+     *
+     * @param grid the grid to update
+     */
+    public void copyTo(Grid grid) {
+        grid.setCells(cells);
+    }
+
+    public GamePiece getCurrentPiece() {
+        return currentPiece;
+    }
+
+    public GamePiece getFollowingPiece() {
+        return followingPiece;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getLives() {
+        return lives;
+    }
+
+    public int getMultiplier() {
+        return multiplier;
+    }
+
+    public boolean isOver() {
+        return over;
+    }
+
+}
@@ -2,19 +2,44 @@ package uk.ac.soton.comp1206.game;
 
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
+import uk.ac.soton.comp1206.event.GridChangedListener;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
 
 /**
  * The Grid is a model which holds the state of a game board. It is made up of a set of Integer values arranged in a 2D
  * arrow, with rows and columns.
  * <p>
- * Each value inside the Grid is an IntegerProperty can be bound to enable modification and display of the contents of
- * the grid.
+ * Internally the grid is a bitboard: one occupancy bit per cell, and the colour of every cell packed as a 4-bit nibble,
+ * sixteen cells to a long. Cells are indexed {@code y * cols + x}. Small boards (up to 64 cells) fit in a single word.
+ * <p>
+ * An IntegerProperty view of each cell can be requested for binding. The view is created lazily and is only updated
+ * when the value of that cell actually changes.
+ * <p>
+ * Changes are made in updates. Everything changed inside {@link #update} is announced once when it finishes: the
+ * property view is set to the final value of each changed cell, and each {@link GridChangedListener} is called once
+ * with a mask of the changed cells. Placing a piece, clearing lines and emptying the grid are each an update of their
+ * own, and so is any other single change.
+ * <p>
+ * A {@link GridJournal} of every change can also be requested, for code that wants to follow the grid a batch of
+ * changes at a time rather than a cell at a time.
  * <p>
  * The Grid contains functions related to modifying the model, for example, placing a piece inside the grid.
  * <p>
  * The Grid should be linked to a GameBoard for it's display.
  */
-public class Grid {
+public class Grid implements GridMutator {
+
+    /**
+     * Mask of a single nibble
+     */
+    private static final long NIBBLE = 0xFL;
+
+    /**
+     * Number of changes kept by the journal
+     */
+    private static final int JOURNAL_CAPACITY = 1024;
 
     /**
      * The number of columns in this grid
@@ -27,9 +52,77 @@ public class Grid {
     private final int rows;
 
     /**
-     * The grid is a 2D arrow with rows and columns of SimpleIntegerProperties.
+     * One bit per cell, set when the cell holds a block
+     */
+    private final long[] occupied;
+
+    /**
+     * The value of every cell as a 4-bit nibble, sixteen cells per long
+     */
+    private final long[] colours;
+
+    /**
+     * Number of filled cells in each row
+     */
+    private final int[] rowCounts;
+
+    /**
+     * Number of filled cells in each column
+     */
+    private final int[] colCounts;
+
+    /**
+     * Zobrist hash of which cells are filled
+     */
+    private long hash;
+
+    /**
+     * Free cells, used while working out legal placements
+     */
+    private final long[] free;
+
+    /**
+     * Property view of the grid, only created for cells that something has asked to observe
+     */
+    private final SimpleIntegerProperty[] view;
+
+    /**
+     * Journal of every change, only created once something asks for it
+     */
+    private volatile GridJournal journal;
+
+    /**
+     * Listeners told about each update
+     */
+    private GridChangedListener[] listeners = new GridChangedListener[0];
+
+    /**
+     * Whether anything (a listener or the property view) wants to hear about changes
+     */
+    private boolean observed;
+
+    /**
+     * Whether any cell of the property view has been created
+     */
+    private boolean viewed;
+
+    /**
+     * Number of updates open, so nested updates announce their changes once
+     */
+    private int depth;
+
+    /**
+     * Cells written in the open update, and their values before it, only kept while the grid is observed
+     */
+    private long[] changed;
+    private final long[] before;
+
+    /**
+     * A cleared mask to swap in for {@link #changed} when an update is announced, or null while one is being announced
      */
-    private final SimpleIntegerProperty[][] grid;
+    private long[] spare;
+
+    private boolean pending;
 
     /**
      * Create a new Grid with the specified number of columns and rows and initialise them
@@ -41,17 +134,124 @@ public class Grid {
         this.cols = cols;
         this.rows = rows;
 
-        //Create the grid itself
-        grid = new SimpleIntegerProperty[cols][rows];
+        var cells = cols * rows;
+        this.occupied = new long[(cells + 63) >>> 6];
+        this.colours = new long[(cells + 15) >>> 4];
+        this.free = new long[occupied.length];
+        this.changed = new long[occupied.length];
+        this.spare = new long[occupied.length];
+        this.before = new long[colours.length];
+        this.rowCounts = new int[rows];
+        this.colCounts = new int[cols];
+        this.view = new SimpleIntegerProperty[cells];
+    }
+
+    /**
+     * Create a copy of this grid's contents. The copy has no property view of its own, so it is cheap to make and to
+     * change, for example when searching for moves.
+     *
+     * @return a new grid with the same contents
+     */
+    public Grid copy() {
+        var copy = new Grid(cols, rows);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    /**
+     * Overwrite the contents of this grid with the contents of another grid of the same size. Any property view of
+     * this grid is not updated, so this is meant for grids used in searches rather than ones being displayed. If this
+     * grid has a journal, the cells are written one by one so the journal sees every change.
+     *
+     * @param other the grid to copy
+     */
+    public void copyFrom(Grid other) {
+        if (other.cols != cols || other.rows != rows) {
+            throw new IllegalArgumentException("Grid sizes differ: " + other.cols + "x" + other.rows);
+        }
+        if (journal != null) {
+            setCells(other.colours);
+            return;
+        }
+        System.arraycopy(other.occupied, 0, occupied, 0, occupied.length);
+        System.arraycopy(other.colours, 0, colours, 0, colours.length);
+        System.arraycopy(other.rowCounts, 0, rowCounts, 0, rows);
+        System.arraycopy(other.colCounts, 0, colCounts, 0, cols);
+        hash = other.hash;
+    }
 
-        //Add a SimpleIntegerProperty to every block in the grid
-        for (var y = 0; y < rows; y++) {
-            for (var x = 0; x < cols; x++) {
-                grid[x][y] = new SimpleIntegerProperty(0);
+    /**
+     * Copy out the value of every cell, packed 16 cells to a long, 4 bits each, in cell index order
+     *
+     * @return the packed cells
+     */
+    public long[] getCells() {
+        return colours.clone();
+    }
+
+    /**
+     * Overwrite every cell from values packed by {@link #getCells()}. Only cells that change are written, so the
+     * property view is updated for just those cells.
+     *
+     * @param cells the packed cells
+     */
+    public void setCells(long[] cells) {
+        if (cells.length != colours.length) {
+            throw new IllegalArgumentException("Packed cells don't fit this grid: " + cells.length);
+        }
+        depth++;
+        try {
+            for (int w = 0; w < colours.length; w++) {
+                for (long diff = colours[w] ^ cells[w]; diff != 0; ) {
+                    int nibble = Long.numberOfTrailingZeros(diff) >>> 2;
+                    write((w << 4) + nibble, (int) ((cells[w] >>> (nibble << 2)) & NIBBLE));
+                    diff &= ~(NIBBLE << (nibble << 2));
+                }
             }
+        } finally {
+            end();
+        }
+    }
+
+    /**
+     * Make a set of changes as one update. Listeners and the property view hear about them once, when the outermost
+     * update finishes, even if the changes throw.
+     *
+     * @param changes makes the changes
+     */
+    public void update(Consumer<GridMutator> changes) {
+        depth++;
+        try {
+            changes.accept(this);
+        } finally {
+            end();
         }
     }
 
+    /**
+     * Add a listener to be told about each update
+     *
+     * @param listener the listener
+     */
+    public void addChangeListener(GridChangedListener listener) {
+        var all = Arrays.copyOf(listeners, listeners.length + 1);
+        all[all.length - 1] = listener;
+        listeners = all;
+        observed = true;
+    }
+
+    /**
+     * Remove a listener added with {@link #addChangeListener}
+     *
+     * @param listener the listener
+     */
+    public void removeChangeListener(GridChangedListener listener) {
+        listeners = Arrays.stream(listeners)
+                .filter(existing -> existing != listener)
+                .toArray(GridChangedListener[]::new);
+        observed = viewed || listeners.length > 0;
+    }
+
     /**
      * Get the Integer property contained inside the grid at a given row and column index. Can be used for binding.
      *
@@ -60,7 +260,33 @@ public class Grid {
      * @return the IntegerProperty at the given x and y in this grid
      */
     public IntegerProperty getGridProperty(int x, int y) {
-        return grid[x][y];
+        var index = index(x, y);
+        var property = view[index];
+        if (property == null) {
+            property = new SimpleIntegerProperty(colour(index));
+            //Writes to the property go back into the grid, so the view and the model never disagree
+            property.addListener((observable, oldValue, newValue) -> set(x, y, newValue.intValue()));
+            view[index] = property;
+            viewed = true;
+            observed = true;
+        }
+        return property;
+    }
+
+    /**
+     * Get the journal of changes made to this grid, creating it on first use. Only changes made after it is created
+     * are recorded, so it should be requested before the grid is shared.
+     *
+     * @return the journal
+     */
+    public synchronized GridJournal getJournal() {
+        if (journal == null) {
+            if (cols * rows > GridJournal.MAX_CELLS) {
+                throw new IllegalStateException("Grid too large for a journal: " + cols + "x" + rows);
+            }
+            journal = new GridJournal(JOURNAL_CAPACITY);
+        }
+        return journal;
     }
 
     /**
@@ -70,8 +296,17 @@ public class Grid {
      * @param y     row
      * @param value the new value
      */
+    @Override
     public void set(int x, int y, int value) {
-        grid[x][y].set(value);
+        if (value < 0 || value > NIBBLE) {
+            throw new IllegalArgumentException("Grid value out of range: " + value);
+        }
+        depth++;
+        try {
+            write(index(x, y), value);
+        } finally {
+            end();
+        }
     }
 
     /**
@@ -79,16 +314,15 @@ public class Grid {
      *
      * @param x column
      * @param y row
-     * @return the value
+     * @return the value, or -1 if there is no such cell
      */
+    @Override
     public int get(int x, int y) {
-        try {
-            //Get the value held in the property at the x and y index provided
-            return grid[x][y].get();
-        } catch (ArrayIndexOutOfBoundsException e) {
+        if (x < 0 || x >= cols || y < 0 || y >= rows) {
             //No such index
             return -1;
         }
+        return colour(y * cols + x);
     }
 
     /**
@@ -109,12 +343,73 @@ public class Grid {
         return rows;
     }
 
+    /**
+     * Get the number of filled cells in a row
+     *
+     * @param y row
+     * @return filled cells
+     */
+    public int getRowCount(int y) {
+        return rowCounts[y];
+    }
+
+    /**
+     * Get the number of filled cells in a column
+     *
+     * @param x column
+     * @return filled cells
+     */
+    public int getColCount(int x) {
+        return colCounts[x];
+    }
+
+    /**
+     * Get the number of filled cells in the whole grid
+     *
+     * @return filled cells
+     */
+    public int getFilledCount() {
+        int filled = 0;
+        for (long word : occupied) {
+            filled += Long.bitCount(word);
+        }
+        return filled;
+    }
+
+    /**
+     * Get the Zobrist hash of which cells are filled. Two grids with the same cells filled have the same hash,
+     * whatever colours they are. It is kept up to date as cells change, so it costs nothing to read.
+     *
+     * @return the hash
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Check whether every cell in a row is filled
+     *
+     * @param y row
+     * @return true if the row is full
+     */
+    public boolean isRowFull(int y) {
+        return rowCounts[y] == cols;
+    }
+
+    /**
+     * Check whether every cell in a column is filled
+     *
+     * @param x column
+     * @return true if the column is full
+     */
+    public boolean isColFull(int x) {
+        return colCounts[x] == rows;
+    }
 
     /**
      * canPlayPiece method
-     * Which takes a GamePiece with a given x and y of the grid will return true orfalse if that piece can be played
-     * Tip: iterate through the piece blocks, if the piece has a block at a given x and y (a value of 1),
-     * check if the corresponding x and y on the grid is empty there(a value of 0)
+     * Which takes a GamePiece with a given x and y of the grid will return true orfalse if that piece can be played.
+     * The piece must lie completely inside the grid, and its rows must not overlap any occupied bits.
      *
      * @param piece GamePiece
      * @param x     column
@@ -122,23 +417,19 @@ public class Grid {
      * @return whether the piece can be played
      */
     public boolean canPlayPiece(GamePiece piece, int x, int y) {
-        //Our x y ranges from 0,0 to 4,4, and we need to make sure that our piece doesn't exist in those places
-        var blocks = piece.getBlocks();
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                if (blocks[i][j] != 0) {
-                    //
-                    int n = x + i - 1;
-                    int m = y + j - 1;
-                    //Determine whether the boundary is exceeded
-                    if (n < 0 || n > cols || m < 0 || m > rows) {
-                        return false;
-                    }
-                    //if the grid value is not 0, it means that outbounds or there is a piece
-                    if (get(x + i - 1, y + j - 1) != 0) {
-                        return false;
-                    }
-                }
+        //The bounding box of the piece has to fit inside the grid
+        if (x + piece.getMinX() < 0 || x + piece.getMaxX() >= cols
+                || y + piece.getMinY() < 0 || y + piece.getMaxY() >= rows) {
+            return false;
+        }
+
+        //Any overlap between a row of the piece and an existing block means the piece can't go here
+        for (int j = piece.getMinY(); j <= piece.getMaxY(); j++) {
+            long row = piece.getRowMask(j + 1);
+            if (row == 0) continue;
+            int lowest = Long.numberOfTrailingZeros(row);
+            if (intersects((y + j) * cols + x - 1 + lowest, row >>> lowest)) {
+                return false;
             }
         }
         return true;
@@ -146,33 +437,340 @@ public class Grid {
 
     /**
      * playPiece method
-     * Which takes a GamePiece with a given x and y of the grid will place the piece on the grid
-     * Tip: iterate through the piece blocks, if the piece has a block at a given x and y (a value of 1),
-     * set the corresponding x and y on the grid to the piece number
+     * Which takes a GamePiece with a given x and y of the grid will place the piece on the grid.
+     * Writes the piece value into each of the cells the piece covers.
      *
      * @param piece GamePiece
      * @param x     column
      * @param y     row
      */
+    @Override
     public void playPiece(GamePiece piece, int x, int y) {
-        int[][] blocks = piece.getBlocks();
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                if (blocks[i][j] != 0) {
-                    //set the value of the grid at the given x and y to the piece number
-                    set(x + i - 1, y + j - 1, piece.getValue());
-                }
+        var value = piece.getValue();
+        depth++;
+        try {
+            for (int block = 0; block < piece.size(); block++) {
+                write((y + piece.getOffsetY(block)) * cols + x + piece.getOffsetX(block), value);
+            }
+        } finally {
+            end();
+        }
+    }
+
+    /**
+     * Find every position a piece could be played at, in one go. Bit {@code y * cols + x} of the result is set when
+     * canPlayPiece(piece, x, y) would be true.
+     * <p>
+     * Rather than testing each position, the free cells of the grid are shifted by the offset of each block of the
+     * piece and ANDed together, starting from the positions where the piece fits inside the grid.
+     *
+     * @param piece the piece to place
+     * @return a bitmask of every legal centre
+     */
+    public long[] legalPlacements(GamePiece piece) {
+        var legal = new long[occupied.length];
+        legalPlacements(piece, legal);
+        return legal;
+    }
+
+    /**
+     * Find every position a piece in a given rotation could be played at
+     *
+     * @param piece    the piece number
+     * @param rotation the rotation of the piece
+     * @return a bitmask of every legal centre
+     * @see #legalPlacements(GamePiece)
+     */
+    public long[] legalPlacements(int piece, int rotation) {
+        return legalPlacements(GamePiece.createPiece(piece, rotation));
+    }
+
+    /**
+     * Find every position a piece could be played at, writing the result into an existing mask so nothing is
+     * allocated
+     *
+     * @param piece the piece to place
+     * @param legal filled in with a bitmask of every legal centre, at least as many words as the grid has
+     * @see #legalPlacements(GamePiece)
+     */
+    public void legalPlacements(GamePiece piece, long[] legal) {
+        //Start from every centre where the piece stays inside the grid
+        Arrays.fill(legal, 0, occupied.length, 0L);
+        int left = -piece.getMinX(), right = cols - 1 - piece.getMaxX();
+        for (int y = -piece.getMinY(); y <= rows - 1 - piece.getMaxY(); y++) {
+            for (int x = left; x <= right; x++) {
+                int cell = y * cols + x;
+                legal[cell >>> 6] |= 1L << cell;
             }
         }
+
+        for (int w = 0; w < occupied.length; w++) {
+            free[w] = ~occupied[w];
+        }
+
+        //A centre is only legal if the cell under every block of the piece is free
+        for (int block = 0; block < piece.size(); block++) {
+            andShifted(legal, free, piece.getOffsetY(block) * cols + piece.getOffsetX(block));
+        }
+    }
+
+    /**
+     * Find every position each rotation of a piece could be played at. Rotations with the same shape share the work.
+     *
+     * @param piece the piece number
+     * @return a bitmask of every legal centre, indexed by rotation
+     */
+    public long[][] legalPlacementsAllRotations(int piece) {
+        var legal = new long[GamePiece.ROTATIONS][];
+        for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+            var rotated = GamePiece.createPiece(piece, rotation);
+            if (rotated.getCanonicalRotation() != rotation) {
+                legal[rotation] = legal[rotated.getCanonicalRotation()].clone();
+            } else {
+                legal[rotation] = legalPlacements(rotated);
+            }
+        }
+        return legal;
+    }
+
+    /**
+     * Check whether a piece can be played anywhere on the grid, in any rotation
+     *
+     * @param piece the piece to place
+     * @return true if there is at least one legal placement
+     */
+    public boolean hasLegalPlacement(GamePiece piece) {
+        var legal = new long[occupied.length];
+        for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+            var rotated = piece.rotate(rotation);
+            if (rotated.getCanonicalRotation() != rotated.getRotation()) continue;
+            legalPlacements(rotated, legal);
+            for (long word : legal) {
+                if (word != 0) return true;
+            }
+        }
+        return false;
     }
+
+    /**
+     * Clear any full rows and columns that a piece played at the given position has completed. Only the rows and
+     * columns inside the bounding box of the piece are checked.
+     *
+     * @param piece  the piece that was played
+     * @param x      column the piece was played at
+     * @param y      row the piece was played at
+     * @param result filled in with the lines and blocks that were cleared
+     * @return the number of lines cleared
+     */
+    @Override
+    public int clearLines(GamePiece piece, int x, int y, ClearResult result) {
+        result.reset(cols, rows);
+
+        //Find every full line first, so blocks where lines cross are cleared for both
+        for (int row = Math.max(0, y + piece.getMinY()); row <= Math.min(rows - 1, y + piece.getMaxY()); row++) {
+            if (isRowFull(row)) {
+                result.addRow(row);
+            }
+        }
+        for (int col = Math.max(0, x + piece.getMinX()); col <= Math.min(cols - 1, x + piece.getMaxX()); col++) {
+            if (isColFull(col)) {
+                result.addCol(col);
+            }
+        }
+
+        depth++;
+        try {
+            for (int cell = result.nextCell(0); cell >= 0; cell = result.nextCell(cell + 1)) {
+                write(cell, 0);
+            }
+        } finally {
+            end();
+        }
+        return result.getLines();
+    }
+
     /**
      * Set Grid to empty
      */
+    @Override
     public void clearGrid() {
-        for (int y = 0; y < this.rows; y++) {
-            for (int x = 0; x < this.cols; x++)
-                this.grid[x][y].set(0);
+        depth++;
+        try {
+            for (int w = 0; w < occupied.length; w++) {
+                var bits = occupied[w];
+                while (bits != 0) {
+                    int index = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    write(index, 0);
+                }
+            }
+        } finally {
+            end();
+        }
+    }
+
+    /**
+     * Get the cell index of the given column and row
+     *
+     * @param x column
+     * @param y row
+     * @return the index of the cell
+     */
+    private int index(int x, int y) {
+        if (x < 0 || x >= cols || y < 0 || y >= rows) {
+            throw new ArrayIndexOutOfBoundsException("No such cell: " + x + "," + y);
+        }
+        return y * cols + x;
+    }
+
+    /**
+     * Read the colour nibble of a cell
+     *
+     * @param index cell index
+     * @return the value of the cell
+     */
+    private int colour(int index) {
+        return (int) ((colours[index >>> 4] >>> ((index & 15) << 2)) & NIBBLE);
+    }
+
+    /**
+     * Write a value into a cell, keeping the occupancy bit, the fill counts, the hash and the journal in step, and
+     * noting the change for the end of the update
+     *
+     * @param index cell index
+     * @param value the new value
+     */
+    private void write(int index, int value) {
+        var old = colour(index);
+        if (old == value) {
+            return;
+        }
+
+        int shift = (index & 15) << 2;
+        long bit = 1L << index;
+        if (observed && (changed[index >>> 6] & bit) == 0) {
+            changed[index >>> 6] |= bit;
+            before[index >>> 4] = (before[index >>> 4] & ~(NIBBLE << shift)) | ((long) old << shift);
+            pending = true;
+        }
+        colours[index >>> 4] = (colours[index >>> 4] & ~(NIBBLE << shift)) | ((long) value << shift);
+
+        if (value == 0) {
+            occupied[index >>> 6] &= ~bit;
+            rowCounts[index / cols]--;
+            colCounts[index % cols]--;
+            hash ^= Zobrist.cell(index);
+        } else if (old == 0) {
+            occupied[index >>> 6] |= bit;
+            rowCounts[index / cols]++;
+            colCounts[index % cols]++;
+            hash ^= Zobrist.cell(index);
+        }
+
+        var journal = this.journal;
+        if (journal != null) {
+            journal.record(index, old, value);
+        }
+    }
+
+    /**
+     * Close an update. When the outermost one closes, bring the property view up to date and tell the listeners about
+     * the cells that ended up different.
+     */
+    private void end() {
+        if (--depth > 0 || !pending) {
+            return;
+        }
+        pending = false;
+        //Swap in a cleared mask, so an update made by a listener starts afresh. Only allocate if one is doing so now.
+        var mask = changed;
+        changed = spare != null ? spare : new long[mask.length];
+        spare = null;
+        try {
+            announce(mask);
+        } finally {
+            Arrays.fill(mask, 0L);
+            spare = mask;
+        }
+    }
+
+    /**
+     * Bring the property view up to date with the cells in a mask, and tell the listeners about those that ended up
+     * different
+     *
+     * @param mask the cells changed by the update
+     */
+    private void announce(long[] mask) {
+        boolean any = false;
+        for (int w = 0; w < mask.length; w++) {
+            for (long bits = mask[w]; bits != 0; bits &= bits - 1) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(bits);
+                var value = colour(index);
+                if (value == (int) ((before[index >>> 4] >>> ((index & 15) << 2)) & NIBBLE)) {
+                    //Changed and changed back
+                    mask[w] &= ~(1L << index);
+                    continue;
+                }
+                var property = view[index];
+                if (property != null) {
+                    property.set(value);
+                }
+            }
+            any |= mask[w] != 0;
+        }
+        if (!any) {
+            return;
+        }
+        for (var listener : listeners) {
+            listener.gridChanged(this, mask);
+        }
+    }
+
+    /**
+     * AND a mask with another mask shifted so that bit {@code c + offset} of the source lines up with bit c
+     *
+     * @param mask   the mask to update
+     * @param source the mask to shift
+     * @param offset the cell offset, may be negative
+     */
+    private static void andShifted(long[] mask, long[] source, int offset) {
+        int words = source.length;
+        int wordShift = Math.abs(offset) >>> 6;
+        int bitShift = Math.abs(offset) & 63;
+        for (int w = 0; w < words; w++) {
+            long shifted;
+            if (offset >= 0) {
+                int from = w + wordShift;
+                shifted = from < words ? source[from] >>> bitShift : 0;
+                if (bitShift != 0 && from + 1 < words) {
+                    shifted |= source[from + 1] << (64 - bitShift);
+                }
+            } else {
+                int from = w - wordShift;
+                shifted = from >= 0 ? source[from] << bitShift : 0;
+                if (bitShift != 0 && from - 1 >= 0) {
+                    shifted |= source[from - 1] >>> (64 - bitShift);
+                }
+            }
+            mask[w] &= shifted;
+        }
+    }
+
+    /**
+     * Check whether a run of bits starting at the given cell overlaps any occupied cell
+     *
+     * @param index first cell index
+     * @param mask  the bits to test, relative to the first cell
+     * @return true if any of the cells are occupied
+     */
+    private boolean intersects(int index, long mask) {
+        int word = index >>> 6;
+        int shift = index & 63;
+        if ((occupied[word] & (mask << shift)) != 0) {
+            return true;
         }
+        //The run may spill over into the next word
+        return shift != 0 && word + 1 < occupied.length && (occupied[word + 1] & (mask >>> (64 - shift))) != 0;
     }
 
 }
@@ -0,0 +1,161 @@
+package uk.ac.soton.comp1206.game;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A GridJournal records every change made to a grid, in order, so other code can follow the grid by reading just the
+ * cells that changed: a board redrawing once per frame, a replay recorder or a network sender.
+ * <p>
+ * The journal is a ring buffer of longs. Each change is one entry holding its sequence number, the cell index, the old
+ * value and the new value, so recording a change allocates nothing. Each reader has its own {@link Cursor} and reads
+ * at its own pace. A reader that falls more than a whole buffer behind has lost changes; it is told so, and should
+ * read the whole grid again.
+ * <p>
+ * Only the thread that changes the grid records changes. Cursors can be read from any thread.
+ */
+public class GridJournal {
+
+    private static final VarHandle ENTRIES = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * Bits of an entry used for the cell index and for each value
+     */
+    private static final int INDEX_BITS = 16;
+    private static final int VALUE_BITS = 4;
+    private static final int SEQUENCE_SHIFT = INDEX_BITS + 2 * VALUE_BITS;
+
+    /**
+     * Largest grid a journal can record
+     */
+    public static final int MAX_CELLS = 1 << INDEX_BITS;
+
+    /**
+     * Handles the changes read from a cursor
+     */
+    @FunctionalInterface
+    public interface Change {
+        /**
+         * Called for each change, in the order they were made
+         *
+         * @param index    cell index, {@code y * cols + x}
+         * @param oldValue the value before the change
+         * @param newValue the value after the change
+         * @param sequence the number of the change
+         */
+        void changed(int index, int oldValue, int newValue, long sequence);
+    }
+
+    /**
+     * A reader's position in the journal
+     */
+    public final class Cursor {
+        private long position;
+
+        private Cursor(long position) {
+            this.position = position;
+        }
+
+        /**
+         * Get the sequence number of the next change this cursor will read
+         *
+         * @return the position
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        /**
+         * Read every change made since the last read
+         *
+         * @param handler called for each change
+         * @return the number of changes read, or -1 if changes were lost, in which case the cursor has skipped to the
+         * newest change and the grid should be read again in full
+         */
+        public int read(Change handler) {
+            long end = getSequence();
+            int read = 0;
+            while (position < end) {
+                long entry = (long) ENTRIES.getAcquire(entries, (int) (position & mask));
+                if (entry >>> SEQUENCE_SHIFT != position) {
+                    //Overwritten before we got to it
+                    position = getSequence();
+                    return -1;
+                }
+                handler.changed((int) (entry >>> 2 * VALUE_BITS) & (MAX_CELLS - 1),
+                        (int) (entry >>> VALUE_BITS) & 0xF, (int) entry & 0xF, position);
+                position++;
+                read++;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * The entries, indexed by sequence number modulo the capacity
+     */
+    private final long[] entries;
+
+    private final int mask;
+
+    /**
+     * Sequence number of the next change
+     */
+    private volatile long sequence;
+
+    /**
+     * Create a new, empty journal
+     *
+     * @param capacity the number of changes kept, rounded up to a power of two
+     */
+    public GridJournal(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.entries = new long[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Get the sequence number the next change will have
+     *
+     * @return the sequence
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Get the number of changes kept
+     *
+     * @return capacity
+     */
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    /**
+     * Create a cursor that will read the changes made from now on
+     *
+     * @return the cursor
+     */
+    public Cursor cursor() {
+        return new Cursor(sequence);
+    }
+
+    /**
+     * Record a change to a cell. Only called by the grid.
+     *
+     * @param index    cell index
+     * @param oldValue the value before the change
+     * @param newValue the value after the change
+     */
+    void record(int index, int oldValue, int newValue) {
+        long next = sequence;
+        ENTRIES.setRelease(entries, (int) (next & mask),
+                next << SEQUENCE_SHIFT | (long) index << 2 * VALUE_BITS | oldValue << VALUE_BITS | newValue);
+        sequence = next + 1;
+    }
+
+}
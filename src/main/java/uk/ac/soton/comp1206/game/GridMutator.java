@@ -0,0 +1,52 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * The changes that can be made to a grid inside {@link Grid#update}. Everything changed through it is announced to the
+ * grid's listeners as one change when the update finishes.
+ */
+public interface GridMutator {
+
+    /**
+     * Get the value of a cell
+     *
+     * @param x column
+     * @param y row
+     * @return the value, or -1 if there is no such cell
+     */
+    int get(int x, int y);
+
+    /**
+     * Set the value of a cell
+     *
+     * @param x     column
+     * @param y     row
+     * @param value the new value
+     */
+    void set(int x, int y, int value);
+
+    /**
+     * Write a piece into the cells it covers
+     *
+     * @param piece the piece
+     * @param x     column
+     * @param y     row
+     */
+    void playPiece(GamePiece piece, int x, int y);
+
+    /**
+     * Clear the full rows and columns a piece played at the given position has completed
+     *
+     * @param piece  the piece that was played
+     * @param x      column
+     * @param y      row
+     * @param result filled in with the lines and blocks cleared
+     * @return the number of lines cleared
+     */
+    int clearLines(GamePiece piece, int x, int y, ClearResult result);
+
+    /**
+     * Empty every cell
+     */
+    void clearGrid();
+
+}
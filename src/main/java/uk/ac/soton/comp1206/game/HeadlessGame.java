@@ -0,0 +1,58 @@
+package uk.ac.soton.comp1206.game;
+
+import uk.ac.soton.comp1206.event.EventBus;
+import uk.ac.soton.comp1206.utils.HashedWheelTimer;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A HeadlessGame is a Game with no scene behind it, for bots, load tests and servers. It plays no sounds, doesn't read
+ * the local scores and has no JavaFX pulse. Actions are performed straight away on the thread that submits them, and
+ * listeners are called on that thread as things happen, instead of on the next JavaFX frame.
+ */
+public class HeadlessGame extends Game {
+
+    /**
+     * Create a new headless game on top of the given core, timed by the given timer
+     *
+     * @param core  the rules and state of the game
+     * @param timer runs the game loop when a piece times out
+     */
+    public HeadlessGame(GameCore core, HashedWheelTimer timer) {
+        super(core, timer, Runnable::run, core.getGrid());
+    }
+
+    /**
+     * Set up the start of the game without music or the local high score
+     */
+    @Override
+    public void initialiseGame() {
+        fireLoop(getTimerDelay());
+        firePieces();
+    }
+
+    @Override
+    public void perform(GameAction action) {
+        super.perform(action);
+        sync();
+    }
+
+    @Override
+    protected void startPulse() {
+    }
+
+    @Override
+    protected Executor getListenerExecutor() {
+        return EventBus.INLINE;
+    }
+
+    /**
+     * Bring the properties up to date before game over listeners read them
+     */
+    @Override
+    protected void fireGameOver() {
+        sync();
+        super.fireGameOver();
+    }
+
+}
@@ -0,0 +1,110 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A PieceSource decides which pieces come next in a game.
+ * <p>
+ * Every source keeps a bounded lookahead queue of upcoming pieces, so taking the next piece and previewing the pieces
+ * after it are O(1). Subclasses only have to say how a new piece number is generated.
+ */
+public abstract class PieceSource {
+
+    /**
+     * Upcoming piece numbers, as a ring buffer
+     */
+    private final int[] queue;
+
+    /**
+     * Position of the next piece in the queue
+     */
+    private int head;
+
+    /**
+     * Number of pieces in the queue
+     */
+    private int size;
+
+    /**
+     * Create a new piece source
+     *
+     * @param lookahead the number of upcoming pieces to keep ready
+     */
+    protected PieceSource(int lookahead) {
+        if (lookahead < 1) {
+            throw new IllegalArgumentException("Lookahead must be at least 1: " + lookahead);
+        }
+        this.queue = new int[lookahead];
+    }
+
+    /**
+     * Generate a new piece number to add to the back of the queue
+     *
+     * @return a piece number, or -1 if no piece is available yet
+     */
+    protected abstract int generate();
+
+    /**
+     * Take the next piece
+     *
+     * @return the next piece
+     * @throws IllegalStateException if no piece is available
+     */
+    public GamePiece next() {
+        fill();
+        if (size == 0) {
+            throw new IllegalStateException("No pieces available");
+        }
+        var piece = queue[head];
+        head = (head + 1) % queue.length;
+        size--;
+        fill();
+        return GamePiece.createPiece(piece);
+    }
+
+    /**
+     * Look at an upcoming piece without taking it
+     *
+     * @param ahead how far ahead to look, 0 is the piece next() would return
+     * @return the piece, or null if it isn't known yet
+     */
+    public GamePiece peek(int ahead) {
+        fill();
+        if (ahead < 0 || ahead >= size) {
+            return null;
+        }
+        return GamePiece.createPiece(queue[(head + ahead) % queue.length]);
+    }
+
+    /**
+     * Get the number of upcoming pieces this source keeps ready
+     *
+     * @return lookahead
+     */
+    public int getLookahead() {
+        return queue.length;
+    }
+
+    /**
+     * Get the number of upcoming pieces that are currently known
+     *
+     * @return pieces in the queue
+     */
+    public int available() {
+        fill();
+        return size;
+    }
+
+    /**
+     * Top the queue up with newly generated pieces
+     */
+    private void fill() {
+        while (size < queue.length) {
+            var piece = generate();
+            if (piece < 0) {
+                return;
+            }
+            queue[(head + size) % queue.length] = piece;
+            size++;
+        }
+    }
+
+}
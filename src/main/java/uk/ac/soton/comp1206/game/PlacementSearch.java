@@ -0,0 +1,532 @@
+package uk.ac.soton.comp1206.game;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The PlacementSearch looks for the best move for the current position of a game, for bots and for analysing the
+ * scoring formula offline.
+ * <p>
+ * It plays the current piece and then the following piece, in both orders (playing the following piece first means
+ * swapping), with every rotation and every legal position. The best boards after the first piece are kept as a beam,
+ * and each one is expanded with the second piece on the fork/join pool. With lookahead on, each of those boards is
+ * then judged by the expected best score over every piece that could come next (expectimax), rather than by the
+ * evaluator alone.
+ * <p>
+ * A search has a time budget, and can be cancelled from another thread; either way it returns the best move found so
+ * far. Searches can run on one instance at the same time, and cancelling stops all of them.
+ * <p>
+ * Many different moves lead to the same board, so a search can be given a {@link TranspositionTable} to remember the
+ * values of boards it has already judged. The table can be kept between searches.
+ */
+public class PlacementSearch {
+
+    /**
+     * Value given to a board where the next piece can't be played anywhere
+     */
+    private static final double STUCK = -1_000_000;
+
+    /**
+     * A move found by the search: optionally swap, then play the piece (already rotated) at the given position
+     */
+    public static class Move {
+        private final boolean swap;
+        private final GamePiece piece;
+        private final int x;
+        private final int y;
+
+        Move(boolean swap, GamePiece piece, int x, int y) {
+            this.swap = swap;
+            this.piece = piece;
+            this.x = x;
+            this.y = y;
+        }
+
+        /**
+         * Whether the current and following pieces should be swapped first
+         *
+         * @return true to swap
+         */
+        public boolean isSwap() {
+            return swap;
+        }
+
+        /**
+         * The piece to play, in the rotation it should be played in
+         *
+         * @return the piece
+         */
+        public GamePiece getPiece() {
+            return piece;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        @Override
+        public String toString() {
+            return (swap ? "swap, " : "") + piece + " rotation " + piece.getRotation() + " at " + x + "," + y;
+        }
+    }
+
+    /**
+     * The outcome of a search
+     */
+    public static class Result {
+        private final Move best;
+        private final double value;
+        private final long nodes;
+        private final long elapsed;
+        private final boolean complete;
+
+        Result(Move best, double value, long nodes, long elapsed, boolean complete) {
+            this.best = best;
+            this.value = value;
+            this.nodes = nodes;
+            this.elapsed = elapsed;
+            this.complete = complete;
+        }
+
+        /**
+         * The best move found
+         *
+         * @return the move, or null if neither piece can be played
+         */
+        public Move getBest() {
+            return best;
+        }
+
+        /**
+         * The value of the best move: points scored plus the value of the board it leads to
+         *
+         * @return value
+         */
+        public double getValue() {
+            return value;
+        }
+
+        /**
+         * The number of boards evaluated
+         *
+         * @return nodes
+         */
+        public long getNodes() {
+            return nodes;
+        }
+
+        /**
+         * How long the search took
+         *
+         * @return elapsed time in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsed;
+        }
+
+        /**
+         * The search speed across all threads
+         *
+         * @return boards evaluated per second
+         */
+        public double getNodesPerSecond() {
+            return elapsed == 0 ? 0 : nodes * 1e9 / elapsed;
+        }
+
+        /**
+         * Whether the whole search finished, rather than being cut short by the time budget or cancelled
+         *
+         * @return true if complete
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    /**
+     * A board reached by playing the first piece
+     */
+    private static class Node {
+        final Move move;
+        final Grid grid;
+        final int points;
+        final int multiplier;
+        final double estimate;
+        double value = Double.NEGATIVE_INFINITY;
+
+        Node(Move move, Grid grid, int points, int multiplier, double estimate) {
+            this.move = move;
+            this.grid = grid;
+            this.points = points;
+            this.multiplier = multiplier;
+            this.estimate = estimate;
+        }
+    }
+
+    private final ForkJoinPool pool;
+
+    private final BoardEvaluator evaluator;
+
+    /**
+     * Number of boards after the first piece that are expanded further
+     */
+    private final int beamWidth;
+
+    /**
+     * Whether to look one unknown piece further ahead
+     */
+    private final boolean lookahead;
+
+    /**
+     * Remembers the values of boards already judged, or null to judge every board again
+     */
+    private final TranspositionTable table;
+
+    /**
+     * The searches in progress, so they can be cancelled
+     */
+    private final Set<Run> running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Create a new search on the common fork/join pool, with the standard evaluator
+     *
+     * @param beamWidth number of boards after the first piece that are expanded further
+     * @param lookahead whether to average over every piece that could come after the following piece
+     */
+    public PlacementSearch(int beamWidth, boolean lookahead) {
+        this(ForkJoinPool.commonPool(), BoardEvaluator.standard(), beamWidth, lookahead);
+    }
+
+    /**
+     * Create a new search
+     *
+     * @param pool      the pool to run the search on
+     * @param evaluator judges the boards the search reaches
+     * @param beamWidth number of boards after the first piece that are expanded further
+     * @param lookahead whether to average over every piece that could come after the following piece
+     */
+    public PlacementSearch(ForkJoinPool pool, BoardEvaluator evaluator, int beamWidth, boolean lookahead) {
+        this(pool, evaluator, beamWidth, lookahead, null);
+    }
+
+    /**
+     * Create a new search that remembers the values of the boards it judges
+     *
+     * @param pool      the pool to run the search on
+     * @param evaluator judges the boards the search reaches
+     * @param beamWidth number of boards after the first piece that are expanded further
+     * @param lookahead whether to average over every piece that could come after the following piece
+     * @param table     the table to remember values in, or null for none
+     */
+    public PlacementSearch(ForkJoinPool pool, BoardEvaluator evaluator, int beamWidth, boolean lookahead,
+                           TranspositionTable table) {
+        this.pool = pool;
+        this.evaluator = evaluator;
+        this.beamWidth = beamWidth;
+        this.lookahead = lookahead;
+        this.table = table;
+    }
+
+    /**
+     * Search for the best move in the current position of a game
+     *
+     * @param core   the game
+     * @param budget time budget in milliseconds
+     * @return the result of the search
+     */
+    public Result search(GameCore core, long budget) {
+        return search(core.getGrid(), core.getCurrentPiece(), core.getFollowingPiece(), core.getMultiplier(), budget);
+    }
+
+    /**
+     * Search for the best move on a board. The grid is not changed.
+     *
+     * @param grid       the board
+     * @param current    the current piece
+     * @param following  the following piece
+     * @param multiplier the current score multiplier
+     * @param budget     time budget in milliseconds
+     * @return the result of the search
+     */
+    public Result search(Grid grid, GamePiece current, GamePiece following, int multiplier, long budget) {
+        long start = System.nanoTime();
+        var search = new Run(start + budget * 1_000_000L);
+        running.add(search);
+        try {
+            return search(search, start, grid, current, following, multiplier);
+        } finally {
+            running.remove(search);
+        }
+    }
+
+    /**
+     * Run a search that has been registered as running
+     */
+    private Result search(Run search, long start, Grid grid, GamePiece current, GamePiece following, int multiplier) {
+        if (table != null) {
+            table.nextAge();
+        }
+
+        //Play the first piece every way it can go, in both orders
+        var expansions = new ArrayList<ForkJoinTask<List<Node>>>();
+        expansions.add(pool.submit(search.new Expand(grid.copy(), false, current, multiplier)));
+        if (following.getPiece() != current.getPiece()) {
+            expansions.add(pool.submit(search.new Expand(grid.copy(), true, following, multiplier)));
+        }
+        var nodes = new ArrayList<Node>();
+        for (var expansion : expansions) {
+            nodes.addAll(expansion.join());
+        }
+        nodes.sort(Comparator.comparingDouble((Node node) -> node.estimate).reversed());
+        var beam = nodes.subList(0, Math.min(beamWidth, nodes.size()));
+
+        //Play the second piece on each board in the beam, in parallel
+        var tasks = new ArrayList<ForkJoinTask<Void>>();
+        for (var node : beam) {
+            tasks.add(pool.submit(search.new Deepen(node, node.move.swap ? current : following)));
+        }
+        for (var task : tasks) {
+            task.join();
+        }
+
+        Node best = null;
+        for (var node : beam) {
+            if (best == null || node.value > best.value) {
+                best = node;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        return new Result(best == null ? null : best.move, best == null ? STUCK : best.value,
+                search.nodes.sum(), elapsed, !search.stopped());
+    }
+
+    /**
+     * Stop every search in progress. Each will return the best move it has found so far. Searches started afterwards
+     * are not affected.
+     */
+    public void cancel() {
+        for (var search : running) {
+            search.cancelled = true;
+        }
+    }
+
+    /**
+     * Judge a board with the evaluator, or take its value from the table if it has been judged before
+     *
+     * @param grid the board
+     * @return the value of the board
+     */
+    private double evaluate(Grid grid) {
+        if (table == null) {
+            return evaluator.evaluate(grid);
+        }
+        long key = grid.getHash();
+        double value = table.probe(key, 0);
+        if (Double.isNaN(value)) {
+            value = evaluator.evaluate(grid);
+            table.store(key, 0, value);
+        }
+        return value;
+    }
+
+    /**
+     * The score for clearing lines, the same formula as {@link GameCore#score(int, int)}
+     *
+     * @param clear      the lines cleared
+     * @param multiplier the multiplier before the clear
+     * @return points scored
+     */
+    private static int points(ClearResult clear, int multiplier) {
+        return clear.getLines() * clear.getBlocks() * 10 * multiplier;
+    }
+
+    /**
+     * The multiplier after a piece is played
+     *
+     * @param clear      the lines cleared
+     * @param multiplier the multiplier before the clear
+     * @return the new multiplier
+     */
+    private static int nextMultiplier(ClearResult clear, int multiplier) {
+        return clear.getLines() == 0 ? 1 : multiplier + 1;
+    }
+
+    /**
+     * State shared by the tasks of a single search
+     */
+    private class Run {
+        final long deadline;
+        final LongAdder nodes = new LongAdder();
+        volatile boolean cancelled;
+
+        Run(long deadline) {
+            this.deadline = deadline;
+        }
+
+        boolean stopped() {
+            return cancelled || System.nanoTime() > deadline;
+        }
+
+        /**
+         * Plays the first piece every way it can go, or as many as there is time for
+         */
+        class Expand extends RecursiveTask<List<Node>> {
+            @Serial
+            private static final long serialVersionUID = 1L;
+
+            private final Grid grid;
+            private final boolean swap;
+            private final GamePiece piece;
+            private final int multiplier;
+
+            Expand(Grid grid, boolean swap, GamePiece piece, int multiplier) {
+                this.grid = grid;
+                this.swap = swap;
+                this.piece = piece;
+                this.multiplier = multiplier;
+            }
+
+            @Override
+            protected List<Node> compute() {
+                var nodes = new ArrayList<Node>();
+                var legal = new long[(grid.getCols() * grid.getRows() + 63) >>> 6];
+                var clear = new ClearResult();
+                //Once stopped, only carry on until there is a move to return
+                for (int rotation = 0; rotation < GamePiece.ROTATIONS && (nodes.isEmpty() || !stopped()); rotation++) {
+                    var rotated = piece.rotate(rotation);
+                    if (rotated.getCanonicalRotation() != rotated.getRotation()) continue;
+                    grid.legalPlacements(rotated, legal);
+                    for (int w = 0; w < legal.length; w++) {
+                        for (long bits = legal[w]; bits != 0 && (nodes.isEmpty() || !stopped()); bits &= bits - 1) {
+                            int cell = (w << 6) + Long.numberOfTrailingZeros(bits);
+                            int x = cell % grid.getCols(), y = cell / grid.getCols();
+                            var board = grid.copy();
+                            board.playPiece(rotated, x, y);
+                            board.clearLines(rotated, x, y, clear);
+                            int points = points(clear, multiplier);
+                            nodes.add(new Node(new Move(swap, rotated, x, y), board, points,
+                                    nextMultiplier(clear, multiplier), points + evaluate(board)));
+                            Run.this.nodes.increment();
+                        }
+                    }
+                }
+                return nodes;
+            }
+        }
+
+        /**
+         * Plays the second piece on a board from the beam, and records the best value that can be reached
+         */
+        class Deepen extends RecursiveTask<Void> {
+            @Serial
+            private static final long serialVersionUID = 1L;
+
+            private final Node node;
+            private final GamePiece piece;
+            private final Grid scratch;
+            private final Grid leaf;
+            private final ClearResult clear = new ClearResult();
+            private final long[] legal;
+            private final long[] leafLegal;
+
+            Deepen(Node node, GamePiece piece) {
+                this.node = node;
+                this.piece = piece;
+                this.scratch = new Grid(node.grid.getCols(), node.grid.getRows());
+                this.leaf = new Grid(node.grid.getCols(), node.grid.getRows());
+                this.legal = new long[(node.grid.getCols() * node.grid.getRows() + 63) >>> 6];
+                this.leafLegal = new long[legal.length];
+            }
+
+            @Override
+            protected Void compute() {
+                //Until something better is found, the board after the first piece is all we know about
+                node.value = node.estimate;
+                double best = Double.NEGATIVE_INFINITY;
+                var grid = node.grid;
+                for (int rotation = 0; rotation < GamePiece.ROTATIONS && !stopped(); rotation++) {
+                    var rotated = piece.rotate(rotation);
+                    if (rotated.getCanonicalRotation() != rotated.getRotation()) continue;
+                    grid.legalPlacements(rotated, legal);
+                    for (int w = 0; w < legal.length; w++) {
+                        for (long bits = legal[w]; bits != 0 && !stopped(); bits &= bits - 1) {
+                            int cell = (w << 6) + Long.numberOfTrailingZeros(bits);
+                            int x = cell % grid.getCols(), y = cell / grid.getCols();
+                            scratch.copyFrom(grid);
+                            scratch.playPiece(rotated, x, y);
+                            scratch.clearLines(rotated, x, y, clear);
+                            int points = points(clear, node.multiplier);
+                            int multiplier = nextMultiplier(clear, node.multiplier);
+                            double value = points + (lookahead ? expect(scratch, multiplier) : evaluate(scratch));
+                            nodes.increment();
+                            best = Math.max(best, value);
+                        }
+                    }
+                }
+                if (best == Double.NEGATIVE_INFINITY) {
+                    //The second piece can't go anywhere
+                    best = stopped() ? evaluate(grid) : STUCK;
+                }
+                node.value = node.points + best;
+                return null;
+            }
+
+            /**
+             * The average, over every piece that could come next, of the best value playing it can reach
+             *
+             * @param grid       the board
+             * @param multiplier the multiplier on that board
+             * @return the expected value
+             */
+            private double expect(Grid grid, int multiplier) {
+                //The same board can be reached by many pairs of moves, so only work it out once
+                long key = grid.getHash() ^ Zobrist.multiplier(multiplier);
+                if (table != null) {
+                    double known = table.probe(key, 1);
+                    if (!Double.isNaN(known)) {
+                        return known;
+                    }
+                }
+                double total = 0;
+                for (int next = 0; next < GamePiece.PIECES; next++) {
+                    double best = STUCK;
+                    for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                        var rotated = GamePiece.createPiece(next, rotation);
+                        if (rotated.getCanonicalRotation() != rotation) continue;
+                        grid.legalPlacements(rotated, leafLegal);
+                        for (int w = 0; w < leafLegal.length; w++) {
+                            for (long bits = leafLegal[w]; bits != 0; bits &= bits - 1) {
+                                int cell = (w << 6) + Long.numberOfTrailingZeros(bits);
+                                int x = cell % grid.getCols(), y = cell / grid.getCols();
+                                leaf.copyFrom(grid);
+                                leaf.playPiece(rotated, x, y);
+                                leaf.clearLines(rotated, x, y, clear);
+                                best = Math.max(best, points(clear, multiplier) + evaluate(leaf));
+                                nodes.increment();
+                            }
+                        }
+                    }
+                    total += best;
+                }
+                double value = total / GamePiece.PIECES;
+                if (table != null) {
+                    table.store(key, 1, value);
+                }
+                return value;
+            }
+        }
+    }
+
+}
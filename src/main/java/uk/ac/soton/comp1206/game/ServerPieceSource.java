@@ -0,0 +1,165 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A PieceSource where the pieces are chosen by the server, so every player in a multiplayer game gets the same pieces.
+ * <p>
+ * Piece numbers received from the server are passed to {@link #offer(int)}, which is safe to call from the
+ * communicator thread. Before and after a piece is taken, the requester is run once for each piece the lookahead is
+ * short, counting pieces already asked for, so the server is asked for pieces as they are needed. The requester is
+ * never run while the source is locked, so it can send to the server straight away.
+ * <p>
+ * Taking a piece waits for the server if none has arrived yet, so a {@link GameCore} can be created on this source
+ * straight away: its first two pieces are asked for and waited for.
+ */
+public class ServerPieceSource extends PieceSource {
+
+    /**
+     * Default time to wait for a piece from the server, in milliseconds
+     */
+    public static final long DEFAULT_WAIT = 5000;
+
+    /**
+     * Called to ask the server for a piece
+     */
+    private final Runnable requester;
+
+    /**
+     * How long to wait for a piece from the server, in milliseconds
+     */
+    private final long wait;
+
+    /**
+     * Piece numbers received but not yet moved into the lookahead queue, as a ring buffer
+     */
+    private int[] received = new int[16];
+    private int receivedHead;
+    private int receivedSize;
+
+    /**
+     * Pieces asked for that haven't arrived yet
+     */
+    private int outstanding;
+
+    /**
+     * Create a new server piece source, which waits up to {@link #DEFAULT_WAIT} ms for each piece
+     *
+     * @param lookahead the number of upcoming pieces to keep ready
+     * @param requester called to ask the server for a piece
+     */
+    public ServerPieceSource(int lookahead, Runnable requester) {
+        this(lookahead, requester, DEFAULT_WAIT);
+    }
+
+    /**
+     * Create a new server piece source
+     *
+     * @param lookahead the number of upcoming pieces to keep ready
+     * @param requester called to ask the server for a piece
+     * @param wait      how long to wait for a piece from the server, in milliseconds
+     */
+    public ServerPieceSource(int lookahead, Runnable requester, long wait) {
+        super(lookahead);
+        this.requester = requester;
+        this.wait = wait;
+    }
+
+    /**
+     * Add a piece received from the server
+     *
+     * @param piece the piece number
+     */
+    public synchronized void offer(int piece) {
+        if (piece < 0 || piece >= GamePiece.PIECES) {
+            throw new IndexOutOfBoundsException("No such piece: " + piece);
+        }
+        if (receivedSize == received.length) {
+            var grown = new int[received.length * 2];
+            for (int i = 0; i < receivedSize; i++) {
+                grown[i] = received[(receivedHead + i) % received.length];
+            }
+            received = grown;
+            receivedHead = 0;
+        }
+        received[(receivedHead + receivedSize) % received.length] = piece;
+        receivedSize++;
+        if (outstanding > 0) {
+            outstanding--;
+        }
+        notifyAll();
+    }
+
+    @Override
+    protected int generate() {
+        if (receivedSize == 0) {
+            return -1;
+        }
+        var piece = received[receivedHead];
+        receivedHead = (receivedHead + 1) % received.length;
+        receivedSize--;
+        return piece;
+    }
+
+    /**
+     * Take the next piece, waiting for the server to send one if need be, and ask the server for more
+     *
+     * @return the next piece
+     * @throws IllegalStateException if no piece arrives in time, or the wait is interrupted
+     */
+    @Override
+    public GamePiece next() {
+        request();
+        GamePiece piece;
+        synchronized (this) {
+            awaitPiece();
+            piece = super.next();
+        }
+        request();
+        return piece;
+    }
+
+    /**
+     * Ask the server for as many pieces as the lookahead is short, counting pieces already asked for
+     */
+    private void request() {
+        int ask;
+        synchronized (this) {
+            ask = Math.max(0, getLookahead() - super.available() - receivedSize - outstanding);
+            outstanding += ask;
+        }
+        for (int i = 0; i < ask; i++) {
+            requester.run();
+        }
+    }
+
+    /**
+     * Wait until a piece is available. Must hold the lock.
+     */
+    private void awaitPiece() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(wait);
+        while (super.available() == 0) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                throw new IllegalStateException("No piece from the server within " + wait + " ms");
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, left);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for a piece from the server", e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized GamePiece peek(int ahead) {
+        return super.peek(ahead);
+    }
+
+    @Override
+    public synchronized int available() {
+        return super.available();
+    }
+
+}
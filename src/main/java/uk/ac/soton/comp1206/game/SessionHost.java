@@ -0,0 +1,369 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.GameLoopListener;
+import uk.ac.soton.comp1206.event.GameOverListener;
+import uk.ac.soton.comp1206.utils.HashedWheelTimer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The SessionHost runs many headless games at once in one JVM, for bot arenas, load tests and checking games on a
+ * server.
+ * <p>
+ * Each session runs on its own virtual thread, in a simple blocking loop: wait for the next action with
+ * {@link Session#awaitAction()}, then perform it. Actions come from other threads through {@link Session#offer}, or
+ * from a {@link Player} that is asked for a move whenever nothing else is waiting. Piece timeouts arrive in the same
+ * queue from the shared timer, so a game is only ever changed by its own session thread.
+ * <p>
+ * Virtual threads need Java 21. On older runtimes the host falls back to a pool of ordinary daemon threads, which works
+ * the same way but costs a platform thread per running session.
+ */
+public class SessionHost implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(SessionHost.class);
+
+    /**
+     * Most sessions registered with one phaser, which can't hold more than 65535 parties
+     */
+    private static final int TIER_SIZE = 65535;
+
+    /**
+     * Chooses moves for a session. Called on the session thread whenever it has nothing else to do.
+     */
+    @FunctionalInterface
+    public interface Player {
+
+        /**
+         * Choose the next move
+         *
+         * @param game the game being played, not to be changed directly
+         * @return the move to make, or null to wait for an action to be offered instead
+         */
+        GameAction act(Game game);
+    }
+
+    /**
+     * A single game running on the host
+     */
+    public class Session {
+        private final int id;
+        private final HeadlessGame game;
+        private final Player player;
+        private final LinkedBlockingQueue<GameAction> actions = new LinkedBlockingQueue<>();
+        private final Phaser tier;
+        private volatile boolean closed;
+        private volatile Thread thread;
+
+        private Session(int id, GameCore core, Player player, Phaser tier) {
+            this.id = id;
+            this.player = player;
+            this.tier = tier;
+            this.game = new HeadlessGame(core, timer) {
+                @Override
+                protected void onTimeout() {
+                    //Run the game loop on the session thread, not the timer thread
+                    offer(GameAction.TIMEOUT);
+                }
+            };
+        }
+
+        /**
+         * Send an action to the session. It will be performed in order on the session thread.
+         *
+         * @param action the action
+         */
+        public void offer(GameAction action) {
+            actions.add(action);
+        }
+
+        /**
+         * Wait for the next action: one that has been offered, or else a move from the player
+         *
+         * @return the action
+         * @throws InterruptedException if the session is closed while waiting
+         */
+        public GameAction awaitAction() throws InterruptedException {
+            var action = actions.poll();
+            if (action == null && player != null) {
+                action = player.act(game);
+            }
+            return action != null ? action : actions.take();
+        }
+
+        /**
+         * Stop the session. The game ends where it is, without a game over.
+         */
+        public void close() {
+            closed = true;
+            var running = thread;
+            if (running != null) {
+                running.interrupt();
+            }
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Get the game played in this session. It should only be looked at from listeners or the player, which run on
+         * the session thread.
+         *
+         * @return the game
+         */
+        public Game getGame() {
+            return game;
+        }
+
+        /**
+         * Check whether the game has ended or the session has been closed
+         *
+         * @return true once finished
+         */
+        public boolean isFinished() {
+            return closed || game.getCore().isOver();
+        }
+
+        private void run() {
+            thread = Thread.currentThread();
+            active.incrementAndGet();
+            try {
+                game.start();
+                //A player that always has a move never blocks, so check for an interrupt as well
+                while (!closed && !game.getCore().isOver() && !Thread.currentThread().isInterrupted()) {
+                    var action = awaitAction();
+                    //A timeout that was overtaken by a placement is out of date
+                    if (action.getType() == GameAction.Type.TIMEOUT && !game.isTimedOut()) {
+                        continue;
+                    }
+                    game.perform(action);
+                    actionCount.increment();
+                    if (action.getType() == GameAction.Type.PLACE) {
+                        placeCount.increment();
+                    }
+                }
+            } catch (InterruptedException e) {
+                logger.debug("Session {} interrupted", id);
+            } catch (RuntimeException e) {
+                logger.error("Session {} failed", id, e);
+            } finally {
+                game.stop();
+                active.decrementAndGet();
+                finished.increment();
+                thread = null;
+                tier.arriveAndDeregister();
+            }
+        }
+    }
+
+    private final HashedWheelTimer timer;
+
+    private final ExecutorService executor;
+
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder finished = new LongAdder();
+    private final LongAdder actionCount = new LongAdder();
+    private final LongAdder placeCount = new LongAdder();
+    private final long created = System.nanoTime();
+
+    /**
+     * Every running session is a party of a tier phaser, and each tier with sessions is a party of this one, so it
+     * advances whenever the last running session finishes
+     */
+    private final Phaser sessions = newPhaser(null);
+
+    /**
+     * The tier new sessions are registered with
+     */
+    private Phaser tier = newPhaser(sessions);
+
+    /**
+     * Create a new host using the shared game timer
+     */
+    public SessionHost() {
+        this(HashedWheelTimer.shared());
+    }
+
+    /**
+     * Create a new host
+     *
+     * @param timer the timer for piece timeouts
+     */
+    public SessionHost(HashedWheelTimer timer) {
+        this.timer = timer;
+        this.executor = createExecutor();
+    }
+
+    /**
+     * Start a new session
+     *
+     * @param core             the game to play
+     * @param player           chooses moves when no action has been offered, or null to only perform offered actions
+     * @param gameLoopListener told when the piece timer restarts, or null
+     * @param gameOverListener told when the game ends, or null
+     * @return the session
+     */
+    public Session open(GameCore core, Player player, GameLoopListener gameLoopListener,
+                        GameOverListener gameOverListener) {
+        var session = new Session(nextId.getAndIncrement(), core, player, register());
+        session.game.setGameLooplistener(gameLoopListener);
+        session.game.setGameOverListener(gameOverListener);
+        started.increment();
+        try {
+            executor.execute(session::run);
+        } catch (RejectedExecutionException e) {
+            //The host has been closed, so the session will never run
+            session.tier.arriveAndDeregister();
+            finished.increment();
+            throw e;
+        }
+        return session;
+    }
+
+    /**
+     * Start a new session with no listeners
+     *
+     * @param core   the game to play
+     * @param player chooses moves when no action has been offered, or null to only perform offered actions
+     * @return the session
+     */
+    public Session open(GameCore core, Player player) {
+        return open(core, player, null, null);
+    }
+
+    /**
+     * Stop accepting sessions and close the ones running
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Wait for every session to finish
+     *
+     * @param timeout longest time to wait in milliseconds
+     * @return true if they all finished
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitFinished(long timeout) throws InterruptedException {
+        int phase = sessions.getPhase();
+        if (sessions.getRegisteredParties() == 0) {
+            return true;
+        }
+        try {
+            sessions.awaitAdvanceInterruptibly(phase, timeout, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Get the number of sessions running now
+     *
+     * @return active sessions
+     */
+    public int getActiveSessions() {
+        return active.get();
+    }
+
+    public long getStartedSessions() {
+        return started.sum();
+    }
+
+    public long getFinishedSessions() {
+        return finished.sum();
+    }
+
+    /**
+     * Get the number of actions performed across all sessions
+     *
+     * @return actions performed
+     */
+    public long getActions() {
+        return actionCount.sum();
+    }
+
+    /**
+     * Get the number of pieces placed across all sessions
+     *
+     * @return placements
+     */
+    public long getPlacements() {
+        return placeCount.sum();
+    }
+
+    /**
+     * Get the average number of actions performed per second since the host was created
+     *
+     * @return actions per second
+     */
+    public double getActionsPerSecond() {
+        long elapsed = System.nanoTime() - created;
+        return elapsed == 0 ? 0 : actionCount.sum() * 1e9 / elapsed;
+    }
+
+    /**
+     * Register a new session, starting a new tier when the current one is full
+     *
+     * @return the tier the session was registered with
+     */
+    private synchronized Phaser register() {
+        if (tier.getRegisteredParties() >= TIER_SIZE) {
+            tier = newPhaser(sessions);
+        }
+        tier.register();
+        return tier;
+    }
+
+    /**
+     * Create a phaser that keeps working after its last party leaves, so it can be used again
+     *
+     * @param parent the phaser it is a tier of, or null
+     * @return the phaser
+     */
+    private static Phaser newPhaser(Phaser parent) {
+        return new Phaser(parent) {
+            @Override
+            protected boolean onAdvance(int phase, int registeredParties) {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Create a virtual thread per task executor if the runtime has one, otherwise a pool of daemon threads
+     *
+     * @return the executor
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            var factory = MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+            return (ExecutorService) factory.invoke();
+        } catch (Throwable e) {
+            logger.info("Virtual threads not available, using platform threads for sessions");
+            return Executors.newCachedThreadPool(task -> {
+                var thread = new Thread(task, "Session");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size cache of values for game states, keyed by Zobrist hash, so a search only works out the value of a state
+ * once however many ways it reaches it.
+ * <p>
+ * The table is open addressed with primitive long keys and no locks. Each slot holds two longs: the packed data, and
+ * the key XORed with the data. A reader only trusts a slot if XORing the two gives back its key, so a slot being
+ * written by another thread at the same time just looks like a miss.
+ * <p>
+ * When two states want the same slot, the one searched deeper wins, unless the slot was written by an older search
+ * (see {@link #nextAge()}), in which case it is always replaced.
+ */
+public class TranspositionTable {
+
+    /**
+     * Bytes used by each slot
+     */
+    private static final int SLOT_BYTES = 16;
+
+    /**
+     * Slots, two longs each: key ^ data, then data
+     */
+    private final long[] slots;
+
+    /**
+     * Mask to turn a key into a slot number
+     */
+    private final int mask;
+
+    /**
+     * The age of the current search, kept in each slot written
+     */
+    private volatile int age = 1;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Create a new table using at most the given amount of memory
+     *
+     * @param megabytes size of the table in MB
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("Table size must be at least 1MB: " + megabytes);
+        }
+        //Largest power of two number of slots that fits
+        long count = Long.highestOneBit((long) megabytes * 1024 * 1024 / SLOT_BYTES);
+        count = Math.min(count, 1L << 29);
+        this.slots = new long[(int) count * 2];
+        this.mask = (int) count - 1;
+    }
+
+    /**
+     * Look up the value of a state
+     *
+     * @param key      the Zobrist hash of the state
+     * @param minDepth the least depth the stored value must have been searched to
+     * @return the value, or NaN if it isn't in the table or wasn't searched deep enough
+     */
+    public double probe(long key, int minDepth) {
+        probes.increment();
+        int slot = index(key);
+        long check = slots[slot];
+        long data = slots[slot + 1];
+        if ((check ^ data) != key || data == 0 || depth(data) < minDepth) {
+            return Double.NaN;
+        }
+        hits.increment();
+        return Float.intBitsToFloat((int) data);
+    }
+
+    /**
+     * Store the value of a state
+     *
+     * @param key   the Zobrist hash of the state
+     * @param depth how deep the value was searched
+     * @param value the value
+     */
+    public void store(long key, int depth, double value) {
+        int slot = index(key);
+        long current = slots[slot + 1];
+        int currentAge = (int) (current >>> 40) & 0xFF;
+
+        //Keep a deeper entry from this search rather than overwrite it
+        if (current != 0 && currentAge == (age & 0xFF) && depth(current) > depth
+                && (slots[slot] ^ current) != key) {
+            return;
+        }
+
+        long data = (Float.floatToRawIntBits((float) value) & 0xFFFFFFFFL)
+                | ((long) (depth & 0xFF) << 32)
+                | ((long) (age & 0xFF) << 40)
+                | (1L << 48);
+        slots[slot] = key ^ data;
+        slots[slot + 1] = data;
+    }
+
+    /**
+     * Start a new search. Entries from older searches are replaced whenever their slot is needed.
+     */
+    public void nextAge() {
+        age = (age + 1) & 0xFF;
+        if (age == 0) {
+            age = 1;
+        }
+    }
+
+    /**
+     * Empty the table
+     */
+    public void clear() {
+        Arrays.fill(slots, 0L);
+        probes.reset();
+        hits.reset();
+    }
+
+    /**
+     * Get the number of slots in the table
+     *
+     * @return capacity
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Get the fraction of probes that found a value
+     *
+     * @return hit rate from 0 to 1
+     */
+    public double getHitRate() {
+        long count = probes.sum();
+        return count == 0 ? 0 : (double) hits.sum() / count;
+    }
+
+    private int index(long key) {
+        return ((int) (key ^ (key >>> 32)) & mask) << 1;
+    }
+
+    private static int depth(long data) {
+        return (int) (data >>> 32) & 0xFF;
+    }
+
+}
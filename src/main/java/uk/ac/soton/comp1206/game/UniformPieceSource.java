@@ -0,0 +1,41 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * A PieceSource where every piece is equally likely every time, like the original game.
+ */
+public class UniformPieceSource extends PieceSource {
+
+    private final SplittableRandom random;
+
+    /**
+     * Create a new uniform piece source
+     *
+     * @param seed      the seed, the same seed always gives the same pieces
+     * @param lookahead the number of upcoming pieces to keep ready
+     */
+    public UniformPieceSource(long seed, int lookahead) {
+        this(new SplittableRandom(seed), lookahead);
+    }
+
+    private UniformPieceSource(SplittableRandom random, int lookahead) {
+        super(lookahead);
+        this.random = random;
+    }
+
+    @Override
+    protected int generate() {
+        return random.nextInt(GamePiece.PIECES);
+    }
+
+    /**
+     * Create a new source with an independent stream of pieces, for running games in parallel
+     *
+     * @return the new source
+     */
+    public UniformPieceSource split() {
+        return new UniformPieceSource(random.split(), getLookahead());
+    }
+
+}
@@ -0,0 +1,47 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * Zobrist keys for hashing game states. A state's hash is the XOR of the keys of everything in it, so it can be kept up
+ * to date one change at a time: XOR a key in when something appears and XOR it out again when it goes.
+ * <p>
+ * The Grid keeps a hash of which cells are filled. The placement search adds the score multiplier on top, for values
+ * that depend on it.
+ */
+public final class Zobrist {
+
+    private Zobrist() {
+    }
+
+    /**
+     * Get the key for a filled cell. Keys are generated from the cell index, so any size of grid can be hashed.
+     *
+     * @param cell cell index
+     * @return the key
+     */
+    public static long cell(int cell) {
+        return mix(cell + 0x632BE59BD9B4E019L);
+    }
+
+    /**
+     * Get the key for a score multiplier, for states whose value depends on it
+     *
+     * @param multiplier the multiplier
+     * @return the key
+     */
+    public static long multiplier(int multiplier) {
+        return mix(multiplier + 0x2545F4914F6CDD1DL);
+    }
+
+    /**
+     * Scramble a number into a well spread 64-bit key (the SplitMix64 finaliser)
+     *
+     * @param z the number
+     * @return the key
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+}
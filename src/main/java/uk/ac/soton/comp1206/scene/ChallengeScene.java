@@ -20,6 +20,11 @@ import uk.ac.soton.comp1206.component.GameBlock;
 import uk.ac.soton.comp1206.component.GameBlockCoordinate;
 import uk.ac.soton.comp1206.component.GameBoard;
 import uk.ac.soton.comp1206.component.PieceBoard;
+import uk.ac.soton.comp1206.event.EventBus;
+import uk.ac.soton.comp1206.event.LineClearedListener;
+import uk.ac.soton.comp1206.event.PiecePlacedEvent;
+import uk.ac.soton.comp1206.event.PlacementBlockedEvent;
+import uk.ac.soton.comp1206.game.ClearResult;
 import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.game.GamePiece;
 import uk.ac.soton.comp1206.ui.GamePane;
@@ -35,6 +40,9 @@ public class ChallengeScene extends BaseScene {
 
     private static final Logger logger = LogManager.getLogger(MenuScene.class);
 
+    //rotating is the most repeated sound, so it is kept quieter than the rest
+    private static final double ROTATE_GAIN = 0.6;
+
     protected Game game;
 
     //holds the current piece
@@ -146,6 +154,8 @@ public class ChallengeScene extends BaseScene {
     protected void nextPiece(GamePiece nextCurrentPiece, GamePiece nextFollowingPiece) {
         this.currentPiece.setPiece(nextCurrentPiece);
         this.followingPiece.setPiece(nextFollowingPiece);
+        //hover the shape of the piece about to be placed
+        board.setHoverPiece(nextCurrentPiece);
     }
 
     /**
@@ -153,8 +163,7 @@ public class ChallengeScene extends BaseScene {
      */
     public void rightRotate() {
         game.rotateCurrentPiece(1);
-        currentPiece.setPiece(game.getCurrentPiece());
-        Multimedia.playAudio("rotate.wav");
+        Multimedia.playAudio("rotate.wav", ROTATE_GAIN);
     }
 
     /**
@@ -162,8 +171,7 @@ public class ChallengeScene extends BaseScene {
      */
     public void leftRotate() {
         game.rotateCurrentPiece(3);
-        currentPiece.setPiece(game.getCurrentPiece());
-        Multimedia.playAudio("rotate.wav");
+        Multimedia.playAudio("rotate.wav", ROTATE_GAIN);
     }
 
     /**
@@ -171,8 +179,6 @@ public class ChallengeScene extends BaseScene {
      */
     public void swapPiece() {
         game.swapCurrentPiece();
-        currentPiece.setPiece(game.getCurrentPiece());
-        followingPiece.setPiece(game.getFollowingPiece());
         Multimedia.playAudio("transition.wav");
     }
 
@@ -185,14 +191,23 @@ public class ChallengeScene extends BaseScene {
         board.fadeOutLine(blockCoordinates);
     }
 
+    /**
+     * handles the fade out animation on the board
+     *
+     * @param result the lines and blocks that were cleared
+     */
+    public void clearedLine(ClearResult result) {
+        board.fadeOutLine(result);
+    }
+
     /**
      * Set up the game object and model
      */
     public void setupGame() {
         logger.info("Starting a new challenge");
 
-        //Start new game
-        game = new Game(5, 5);
+        //Start new game, using the level and lives chosen in the settings
+        game = new Game(5, 5, SettingsScene.speedLevel, SettingsScene.healthPoint);
         game.setPlayerName(playerName);
 
     }
@@ -212,7 +227,17 @@ public class ChallengeScene extends BaseScene {
         scene.setOnKeyPressed(this::keyPressed);
 
         //listens to when a line is cleared and calls the respective in class method
-        game.setLineClearedListener(this::clearedLine);
+        game.setLineClearedListener(new LineClearedListener() {
+            @Override
+            public void lineCleared(HashSet<GameBlockCoordinate> blockCoordinates) {
+                clearedLine(blockCoordinates);
+            }
+
+            @Override
+            public void lineCleared(ClearResult result) {
+                clearedLine(result);
+            }
+        });
 
         //listens to when a game loop starts and calls the respective in class method
         game.setGameLooplistener((delay) -> {
@@ -227,13 +252,19 @@ public class ChallengeScene extends BaseScene {
             timeline.setCycleCount(Animation.INDEFINITE);
             timeline.play();
         });
+
+        //plays a sound for each placement, successful or not
+        game.getEvents().subscribe(PiecePlacedEvent.class, EventBus.FX, event -> Multimedia.playAudio("place.wav"));
+        game.getEvents().subscribe(PlacementBlockedEvent.class, EventBus.FX, event -> Multimedia.playAudio("fail.wav"));
         game.start();
     }
 
     private void gameOver(Game game) {
         logger.info("Game Over");
         this.game.stop();
-        timeline.stop();
+        if (timeline != null) {
+            timeline.stop();
+        }
         //show the game over screen,switch to the scores screen
         gameWindow.startScoreBoard(game);
     }
@@ -10,6 +10,7 @@ import javafx.scene.text.Text;
 import javafx.scene.text.TextAlignment;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.component.GameBoard;
 import uk.ac.soton.comp1206.component.PieceBoard;
 import uk.ac.soton.comp1206.game.GamePiece;
 import uk.ac.soton.comp1206.ui.GamePane;
@@ -110,7 +111,9 @@ public class InstructionsScene extends BaseScene{
         for(int i = 0; i<15; i++){
             GamePiece gamePiece = GamePiece.createPiece(i);
 
-            PieceBoard pieceBoard = new PieceBoard(this.gameWindow.getWidth() /14,this.gameWindow.getHeight()/14);
+            //fifteen boards on screen at once, so each is drawn into a single canvas
+            PieceBoard pieceBoard = new PieceBoard(this.gameWindow.getWidth() /14,this.gameWindow.getHeight()/14,
+                    GameBoard.Mode.CANVAS);
 
             pieceBoard.setPiece(gamePiece);
 
@@ -141,7 +141,7 @@ public class MenuScene extends BaseScene {
         //play the menu music
         logger.info("Initialising " + this.getClass().getName());
 
-        Multimedia.stopMusic();
+        //crossfades from whatever was playing
         Multimedia.playMusic("menu.mp3");
         //add keyboard listener to the scene
         //esc quit game
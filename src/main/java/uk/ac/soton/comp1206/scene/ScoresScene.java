@@ -2,8 +2,6 @@ package uk.ac.soton.comp1206.scene;
 
 import javafx.beans.property.SimpleListProperty;
 import javafx.beans.property.SimpleStringProperty;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.geometry.Pos;
 import javafx.scene.layout.*;
 import javafx.scene.text.Text;
@@ -14,10 +12,9 @@ import uk.ac.soton.comp1206.component.ScoreList;
 import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
+import uk.ac.soton.comp1206.utils.ScoreStore;
 
-import java.io.*;
 import java.util.ArrayList;
-import java.util.Objects;
 
 import static javafx.scene.input.KeyCode.ESCAPE;
 
@@ -28,15 +25,12 @@ import static javafx.scene.input.KeyCode.ESCAPE;
 public class ScoresScene extends BaseScene {
 
     private static final Logger logger = LogManager.getLogger(ScoresScene.class);
+    //how many local scores are shown
+    private static final int SHOWN = 10;
+
     //for bind
     private SimpleListProperty<Pair<String, Integer>> localScores;
 
-    //for data source
-    private ArrayList<Pair<String, Integer>> scores;
-
-    //for show
-    private ObservableList<Pair<String, Integer>> observableList;
-
     private ScoreList localScoreList;
 
     private SimpleStringProperty player=new SimpleStringProperty();
@@ -75,27 +69,12 @@ public class ScoresScene extends BaseScene {
     }
 
     /**
-     * Load the scores from the local file and the game
+     * Load the top local scores from the score store
      */
     public static ArrayList<Pair<String, Integer>> loadScores() {
-        //load the scores from the local file,we only need the top 10 scores
-        String scoresPath = Objects.requireNonNull(ScoresScene.class.getResource("/history/scores")).getPath();
-        logger.info("Loading scores from the local file: " + scoresPath);
-        var result = new ArrayList<Pair<String, Integer>>();
-        try {
-            var bufferedReader = new BufferedReader(new FileReader(scoresPath));
-            //the line is player,score
-            String line;
-            while ((line = bufferedReader.readLine()) != null) {
-                var split = line.split(",");
-                result.add(new Pair<>(split[0], Integer.parseInt(split[1])));
-            }
-            bufferedReader.close();
-        } catch (IOException e) {
-            logger.error("Unable to load scores from the local file");
-            e.printStackTrace();
-        }
-        //if result size ==0 ,we need to write a default list of scores to the file
+        //load the scores from the score store, we only need the top 10 scores
+        var result = new ArrayList<>(ScoreStore.getDefault().getTop(SHOWN));
+        //if result size ==0 ,we need to write a default list of scores to the store
         if (result.size() == 0) {
             writeDefaultScores();
             return loadScores();//recursive
@@ -104,43 +83,26 @@ public class ScoresScene extends BaseScene {
     }
 
     /**
-     * writeScores
-     * write an ordered list of scores into a file, using the sameformat as above.
-     * lf the scores file does not exist, write a default list of scores to the file.
+     * saveScore
+     * append one score to the score store, rather than writing the whole list again
+     *
+     * @param name  the player
+     * @param score the score
+     * @return the rank of the score among every local score
      */
-    public static void writeScores(ArrayList<Pair<String, Integer>> pairs) {
-        String scoresPath = Objects.requireNonNull(ScoresScene.class.getResource("/history/scores")).getPath();
-        //write the scores to the local file,clear the old scores
-        logger.info("Writing scores to the local file: " + scoresPath);
-        try {
-            var fileWriter = new BufferedWriter(new FileWriter(scoresPath));
-            for (var pair : pairs) {
-                fileWriter.write(pair.getKey() + "," + pair.getValue() + "\n");
-            }
-            fileWriter.flush();
-            fileWriter.close();
-        } catch (IOException e) {
-            logger.error("Unable to write scores to the local file");
-            e.printStackTrace();
-        }
+    public static int saveScore(String name, int score) {
+        int rank = ScoreStore.getDefault().add(name, score);
+        logger.info("Saved score {} for {}, ranked {}", score, name, rank);
+        return rank;
     }
 
     /**
-     * writeDefaultScores to the file
+     * writeDefaultScores to the store
      */
     private static  void writeDefaultScores() {
-        var result = new ArrayList<Pair<String, Integer>>();
-        result.add(new Pair<>("Player1", 100));
-        result.add(new Pair<>("Player2", 100));
-        result.add(new Pair<>("Player3", 100));
-        result.add(new Pair<>("Player4", 100));
-        result.add(new Pair<>("Player5", 100));
-        result.add(new Pair<>("Player6", 100));
-        result.add(new Pair<>("Player7", 100));
-        result.add(new Pair<>("Player8", 100));
-        result.add(new Pair<>("Player9", 100));
-        result.add(new Pair<>("Player10", 100));
-        writeScores(result);
+        for (int i = 1; i <= 10; i++) {
+            saveScore("Player" + i, 100);
+        }
     }
 
 
@@ -193,25 +155,15 @@ public class ScoresScene extends BaseScene {
     private void buildLocalScoreList() {
         this.localScoreList = new ScoreList();
 
-        //load the scores from the local file,we only need the top 10 scores
-        scores = loadScores();
-        observableList = FXCollections.observableArrayList(scores);
-        localScores = new SimpleListProperty<>(observableList);
+        //make sure there are default scores, then show the top 10, which updates itself as scores are saved
+        loadScores();
+        localScores = new SimpleListProperty<>(ScoreStore.getDefault().top(SHOWN));
 
-        localScoreList.bindScores(localScores);
         //bind player
         localScoreList.bindPlayer(player);
+        localScoreList.bindScores(localScores);
 
-        scores.add(new Pair<>(player.get(), game.score.get()));
-        scores.sort((o1, o2) -> o2.getValue() - o1.getValue());
-        if (scores.size() > 10) {
-            scores.remove(10);
-        }
-        //write back
-        writeScores(scores);
-
-        localScores.clear();
-        localScores.addAll(scores);
-
+        //save just this game's score
+        saveScore(player.get(), game.score.get());
     }
 }
@@ -0,0 +1,323 @@
+package uk.ac.soton.comp1206.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A HashedWheelTimer runs delayed tasks for any number of games on a single thread.
+ * <p>
+ * Time is cut into ticks, and the wheel is a ring of buckets, one per tick. A task goes in the bucket for the tick it
+ * is due in, wrapping round the ring, and each tick the timer thread only looks at one bucket. Scheduling, cancelling
+ * and rescheduling are all O(1) however many tasks are waiting, at the cost of tasks running up to one tick late.
+ * <p>
+ * Other threads never touch the buckets. They hand changes to the timer thread through a queue, and it applies them at
+ * the start of the next tick. Tasks are run on the timer thread, so they should be short.
+ */
+public class HashedWheelTimer {
+
+    private static final Logger logger = LogManager.getLogger(HashedWheelTimer.class);
+
+    /**
+     * The timer shared by every game that isn't given its own
+     */
+    private static HashedWheelTimer shared;
+
+    /**
+     * A task waiting on the timer. The same Timeout can be rescheduled as often as needed, including after it has run.
+     */
+    public static final class Timeout {
+        private static final int SCHEDULED = 0;
+        private static final int EXPIRED = 1;
+        private static final int CANCELLED = 2;
+
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+
+        //Guarded by this
+        private long deadline;
+        private int state;
+
+        //Only used by the timer thread
+        private long tick;
+        private Timeout previous;
+        private Timeout next;
+        private int bucket = -1;
+
+        private Timeout(HashedWheelTimer timer, Runnable task) {
+            this.timer = timer;
+            this.task = task;
+        }
+
+        /**
+         * Stop the task from running. A cancelled Timeout can't be rescheduled.
+         *
+         * @return true if the task was waiting to run
+         */
+        public boolean cancel() {
+            synchronized (this) {
+                if (state == CANCELLED) {
+                    return false;
+                }
+                var wasScheduled = state == SCHEDULED;
+                state = CANCELLED;
+                timer.changes.add(this);
+                return wasScheduled;
+            }
+        }
+
+        /**
+         * Run the task after a new delay instead, whether or not it has already run
+         *
+         * @param delay delay in milliseconds
+         * @return false if the Timeout has been cancelled
+         */
+        public boolean reschedule(long delay) {
+            synchronized (this) {
+                if (state == CANCELLED) {
+                    return false;
+                }
+                deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+                state = SCHEDULED;
+                timer.changes.add(this);
+                return true;
+            }
+        }
+
+        /**
+         * Check whether the task has been cancelled
+         *
+         * @return true if cancelled
+         */
+        public synchronized boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        /**
+         * Check whether the task has run since it was last scheduled
+         *
+         * @return true if it has run
+         */
+        public synchronized boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        /**
+         * Mark the task as run if it is due, so a reschedule that races with it wins
+         *
+         * @param now the current time
+         * @return true if the task should be run now
+         */
+        private synchronized boolean expire(long now) {
+            if (state != SCHEDULED || deadline - now > 0) {
+                return false;
+            }
+            state = EXPIRED;
+            return true;
+        }
+    }
+
+    /**
+     * Length of a tick in nanoseconds
+     */
+    private final long tickNanos;
+
+    /**
+     * Head of the list of timeouts in each bucket
+     */
+    private final Timeout[] wheel;
+
+    private final int mask;
+
+    /**
+     * Timeouts scheduled, rescheduled or cancelled since the last tick
+     */
+    private final ConcurrentLinkedQueue<Timeout> changes = new ConcurrentLinkedQueue<>();
+
+    private final String name;
+
+    private final long start = System.nanoTime();
+
+    private volatile boolean running;
+
+    private boolean stopped;
+
+    private Thread worker;
+
+    /**
+     * The tick the timer thread has reached
+     */
+    private long currentTick;
+
+    /**
+     * Create a new timer. Its thread starts when the first task is scheduled.
+     *
+     * @param tick      length of a tick in milliseconds
+     * @param wheelSize number of buckets, rounded up to a power of two
+     * @param name      name of the timer thread
+     */
+    public HashedWheelTimer(long tick, int wheelSize, String name) {
+        if (tick <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick and wheel size must be positive");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tick);
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        this.wheel = new Timeout[Math.max(1, size)];
+        this.mask = wheel.length - 1;
+        this.name = name;
+    }
+
+    /**
+     * Get the timer shared by all games, with 10ms ticks
+     *
+     * @return the shared timer
+     */
+    public static synchronized HashedWheelTimer shared() {
+        if (shared == null) {
+            shared = new HashedWheelTimer(10, 512, "Game timer");
+        }
+        return shared;
+    }
+
+    /**
+     * Run a task once after a delay
+     *
+     * @param task  the task
+     * @param delay delay in milliseconds
+     * @return the Timeout, used to cancel or reschedule the task
+     */
+    public Timeout schedule(Runnable task, long delay) {
+        var timeout = new Timeout(this, task);
+        startWorker();
+        timeout.reschedule(delay);
+        return timeout;
+    }
+
+    /**
+     * Stop the timer thread for good. Tasks still waiting will not run.
+     */
+    public synchronized void stop() {
+        stopped = true;
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    private synchronized void startWorker() {
+        if (stopped) {
+            throw new IllegalStateException("Timer has been stopped: " + name);
+        }
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * The timer thread: wait for each tick, apply the changes handed over, then run the tasks that are due
+     */
+    private void run() {
+        currentTick = (System.nanoTime() - start) / tickNanos;
+        while (running) {
+            long wake = start + (currentTick + 1) * tickNanos;
+            long wait;
+            while ((wait = wake - System.nanoTime()) > 0 && running) {
+                LockSupport.parkNanos(this, wait);
+            }
+            if (!running) {
+                break;
+            }
+            applyChanges();
+            long now = System.nanoTime();
+            long reached = (now - start) / tickNanos;
+            //Catch up on any ticks missed while the thread was held up
+            while (currentTick < reached) {
+                currentTick++;
+                expire(currentTick, now);
+            }
+        }
+        logger.info("Stopped {}", name);
+    }
+
+    /**
+     * Move each changed timeout into the bucket for its new deadline, or out of the wheel
+     */
+    private void applyChanges() {
+        Timeout timeout;
+        while ((timeout = changes.poll()) != null) {
+            unlink(timeout);
+            long deadline;
+            synchronized (timeout) {
+                if (timeout.state != Timeout.SCHEDULED) {
+                    continue;
+                }
+                deadline = timeout.deadline;
+            }
+            //Round up, so a task never runs early; late tasks go in the next bucket
+            long tick = Math.max(currentTick + 1, (deadline - start + tickNanos - 1) / tickNanos);
+            timeout.tick = tick;
+            link(timeout, (int) (tick & mask));
+        }
+    }
+
+    /**
+     * Run the due tasks in the bucket for a tick. Tasks due on a later turn of the wheel are left.
+     *
+     * @param tick the tick
+     * @param now  the current time
+     */
+    private void expire(long tick, long now) {
+        var timeout = wheel[(int) (tick & mask)];
+        while (timeout != null) {
+            var next = timeout.next;
+            if (timeout.tick <= tick) {
+                unlink(timeout);
+                if (timeout.expire(now)) {
+                    try {
+                        timeout.task.run();
+                    } catch (Exception e) {
+                        logger.error("Timer task failed", e);
+                    }
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    private void link(Timeout timeout, int bucket) {
+        var head = wheel[bucket];
+        timeout.bucket = bucket;
+        timeout.previous = null;
+        timeout.next = head;
+        if (head != null) {
+            head.previous = timeout;
+        }
+        wheel[bucket] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.bucket < 0) {
+            return;
+        }
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            wheel[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+    }
+
+}
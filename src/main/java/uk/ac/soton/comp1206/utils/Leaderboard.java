@@ -0,0 +1,220 @@
+package uk.ac.soton.comp1206.utils;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.util.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * A Leaderboard holds every score in rank order, as an order-statistic skip list, so it can hold millions of results.
+ * <p>
+ * Scores are ranked highest first, and equal scores in the order they were added. Each link in the skip list knows
+ * how many scores it jumps over, so adding a score, finding the rank a score would get and getting the score at a
+ * rank all take O(log n). {@link #top(int)} gives a list of the best few scores that is kept up to date as scores are
+ * added, for a {@link uk.ac.soton.comp1206.component.ScoreList} to bind to.
+ * <p>
+ * Not thread safe. Views are changed by {@link #add(String, int)}, so while one is shown, add scores on the JavaFX
+ * thread.
+ */
+public class Leaderboard {
+
+    /**
+     * Enough levels for far more scores than will ever be saved
+     */
+    private static final int MAX_LEVEL = 32;
+
+    /**
+     * One in this many nodes on a level also reaches the level above
+     */
+    private static final int BRANCHING = 4;
+
+    /**
+     * A list of the top scores, and the read-only view of it handed out
+     */
+    private record View(ObservableList<Pair<String, Integer>> list, ObservableList<Pair<String, Integer>> readOnly) {
+    }
+
+    private static final class Node {
+        final Pair<String, Integer> entry;
+        final int score;
+        final Node[] next;
+        //Number of scores passed by following next[i], counting the one landed on
+        final int[] span;
+
+        Node(Pair<String, Integer> entry, int level) {
+            this.entry = entry;
+            this.score = entry == null ? 0 : entry.getValue();
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+
+    private final Node head = new Node(null, MAX_LEVEL);
+
+    private final SplittableRandom random = new SplittableRandom(1206);
+
+    /**
+     * Used by add: the last node on each level ahead of the new score, and how many scores are ahead of it
+     */
+    private final Node[] update = new Node[MAX_LEVEL];
+    private final int[] passed = new int[MAX_LEVEL];
+
+    /**
+     * Views of the top scores, by how many they show
+     */
+    private final Map<Integer, View> views = new HashMap<>();
+
+    private int level = 1;
+
+    private int size;
+
+    /**
+     * Add a score
+     *
+     * @param name  the player's name
+     * @param score the score
+     * @return the score's rank, 1 being the highest
+     */
+    public int add(String name, int score) {
+        //Find the last node on each level that ranks ahead of the new score. Every equal score was added earlier.
+        var node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            passed[i] = i == level - 1 ? 0 : passed[i + 1];
+            while (node.next[i] != null && node.next[i].score >= score) {
+                passed[i] += node.span[i];
+                node = node.next[i];
+            }
+            update[i] = node;
+        }
+
+        int height = randomLevel();
+        if (height > level) {
+            for (int i = level; i < height; i++) {
+                passed[i] = 0;
+                update[i] = head;
+                head.span[i] = size;
+            }
+            level = height;
+        }
+
+        var entry = new Pair<>(name, score);
+        var added = new Node(entry, height);
+        for (int i = 0; i < height; i++) {
+            added.next[i] = update[i].next[i];
+            update[i].next[i] = added;
+            added.span[i] = update[i].span[i] - (passed[0] - passed[i]);
+            update[i].span[i] = passed[0] - passed[i] + 1;
+        }
+        for (int i = height; i < level; i++) {
+            update[i].span[i]++;
+        }
+        size++;
+        Arrays.fill(update, 0, level, null);
+
+        int rank = passed[0] + 1;
+        for (var view : views.entrySet()) {
+            if (rank <= view.getKey()) {
+                var list = view.getValue().list();
+                list.add(rank - 1, entry);
+                if (list.size() > view.getKey()) {
+                    list.remove(list.size() - 1);
+                }
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Find the rank a new score would get, behind any equal scores already added
+     *
+     * @param score the score
+     * @return the rank, 1 being the highest
+     */
+    public int rank(int score) {
+        int passed = 0;
+        var node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && node.next[i].score >= score) {
+                passed += node.span[i];
+                node = node.next[i];
+            }
+        }
+        return passed + 1;
+    }
+
+    /**
+     * Get the score at a rank
+     *
+     * @param rank the rank, 1 being the highest
+     * @return the player's name and score
+     */
+    public Pair<String, Integer> get(int rank) {
+        if (rank < 1 || rank > size) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " of " + size);
+        }
+        int passed = 0;
+        var node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && passed + node.span[i] <= rank) {
+                passed += node.span[i];
+                node = node.next[i];
+            }
+            if (passed == rank) {
+                break;
+            }
+        }
+        return node.entry;
+    }
+
+    /**
+     * Get the number of scores
+     *
+     * @return the count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the highest scores
+     *
+     * @param count the most to get
+     * @return up to that many scores, highest first
+     */
+    public List<Pair<String, Integer>> head(int count) {
+        var result = new ArrayList<Pair<String, Integer>>(Math.min(count, size));
+        for (var node = head.next[0]; node != null && result.size() < count; node = node.next[0]) {
+            result.add(node.entry);
+        }
+        return result;
+    }
+
+    /**
+     * Get a list of the highest scores that stays up to date as scores are added. Asking for the same count again
+     * gives the same list.
+     *
+     * @param count how many scores the list shows
+     * @return the scores, highest first, which can't be changed by the caller
+     */
+    public ObservableList<Pair<String, Integer>> top(int count) {
+        return views.computeIfAbsent(count, n -> {
+            var list = FXCollections.observableArrayList(head(n));
+            return new View(list, FXCollections.unmodifiableObservableList(list));
+        }).readOnly();
+    }
+
+    private int randomLevel() {
+        int height = 1;
+        while (height < MAX_LEVEL && random.nextInt(BRANCHING) == 0) {
+            height++;
+        }
+        return height;
+    }
+
+}
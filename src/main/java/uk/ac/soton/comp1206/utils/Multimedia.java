@@ -1,8 +1,6 @@
 package uk.ac.soton.comp1206.utils;
 
 import javafx.scene.image.ImageView;
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaPlayer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.game.Game;
@@ -17,59 +15,33 @@ import java.util.Objects;
  * Add a method to play an audio file
  * Add a method to play background music
  * The background music should loop
+ * <p>
+ * The players themselves are kept by SoundEffects and Music, which load them once and reuse them
  */
 
 
 public class Multimedia {
-    private static MediaPlayer audioPlayer;
-    private static MediaPlayer musicPlayer;
-
-    private static double audioVolume = 1;
-
-    private static double musicVolume = 1;
-
-    private static boolean playing = false;
-
 
     private static final Logger logger = LogManager.getLogger(Game.class);
 
+    //play a sound effect from the preloaded pool
     public static void playAudio(String filePath) {
-        try {
-            String musicFilePath = Objects.requireNonNull(Multimedia.class.getResource("/sounds/" + filePath)).toExternalForm();
-            logger.info("Playing audio file: " + musicFilePath);
-            Media audio = new Media(musicFilePath);
-            audioPlayer = new MediaPlayer(audio);
-            audioPlayer.setVolume(audioVolume);
-            audioPlayer.play();
-        } catch (Exception e) {
-            e.printStackTrace();
-            logger.error("Unable to play audio file");
-        }
+        SoundEffects.play(filePath);
+    }
+
+    //play a sound effect at a gain on top of the audio volume
+    public static void playAudio(String filePath, double gain) {
+        SoundEffects.play(filePath, gain);
     }
 
+    //crossfade to a music track, loading it in the background if it isn't ready
     public static void playMusic(String fileName) {
-        try {
-            String musicFilePath = Objects.requireNonNull(Multimedia.class.getResource("/music/" + fileName)).toExternalForm();
-            logger.info("Playing music file: " + musicFilePath);
-            Media music = new Media(musicFilePath);
-            musicPlayer = new MediaPlayer(music);
-            musicPlayer.setVolume(musicVolume);
-            musicPlayer.setCycleCount(MediaPlayer.INDEFINITE);
-            musicPlayer.play();
-            playing = true;
-            //wait here
-        } catch (Exception e) {
-            e.printStackTrace();
-            logger.error("Unable to play music file");
-        }
+        Music.play(fileName);
     }
 
-    //stop music
+    //fade out the music
     public static void stopMusic() {
-        if (playing) {
-            musicPlayer.stop();
-            playing = false;
-        }
+        Music.stop();
     }
 
     public static ImageView getImageView(String fileName) {
@@ -80,15 +52,11 @@ public class Multimedia {
 
     //Set the music volume
     public static void setMusicVolume(double volume) {
-        musicVolume = volume;
-        if(musicPlayer!= null)
-            musicPlayer.setVolume(musicVolume);
+        Music.setVolume(volume);
     }
 
     //Set audio volume
     public static void setAudioVolume(double volume) {
-        audioVolume = volume;
-        if(audioPlayer!= null)
-            audioPlayer.setVolume(audioVolume);
+        SoundEffects.setVolume(volume);
     }
 }
@@ -0,0 +1,260 @@
+package uk.ac.soton.comp1206.utils;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.KeyValue;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+import javafx.util.Duration;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Music plays the background tracks, crossfading from one to the next when the scene changes.
+ * <p>
+ * Tracks are prepared on a background thread, and the last few are kept ready in a small LRU so going back to a scene
+ * starts its music straight away. Asking for a track never waits for it to load: it fades in once it is ready, unless
+ * another track has been asked for by then. Tracks missing from /music are found when they are preloaded. Called on
+ * the JavaFX thread.
+ */
+public class Music {
+
+    private static final Logger logger = LogManager.getLogger(Music.class);
+
+    /**
+     * How many tracks are kept ready
+     */
+    private static final int WARM_TRACKS = 3;
+
+    /**
+     * How long a crossfade takes
+     */
+    private static final Duration CROSSFADE = Duration.millis(800);
+
+    private static final ExecutorService loader = Executors.newSingleThreadExecutor(task -> {
+        var thread = new Thread(task, "Music loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Tracks loading or ready, least recently used first
+     */
+    private static final LinkedHashMap<String, CompletableFuture<MediaPlayer>> tracks =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Fades running on each player
+     */
+    private static final Map<MediaPlayer, Timeline> fades = new HashMap<>();
+
+    private static MediaPlayer current;
+
+    private static String currentName;
+
+    /**
+     * The track last asked for, which is the only one allowed to start when it is ready
+     */
+    private static String requested;
+
+    private static double volume = 1;
+
+    /**
+     * Start loading tracks in the background, and report any that are missing
+     *
+     * @param names the file names in /music
+     */
+    public static void preload(String... names) {
+        for (var name : names) {
+            if (Music.class.getResource("/music/" + name) == null) {
+                logger.error("Music track missing: {}", name);
+                continue;
+            }
+            prepare(name);
+        }
+    }
+
+    /**
+     * Crossfade to a track. Does nothing if it is already playing. If the track is missing or can't be loaded, the
+     * current one fades out.
+     *
+     * @param name the file name in /music
+     */
+    public static void play(String name) {
+        requested = name;
+        if (name.equals(currentName)) {
+            fadeTo(current, volume, null);
+            return;
+        }
+        var track = prepare(name);
+        if (track == null) {
+            fadeOutCurrent();
+            return;
+        }
+        track.whenComplete((player, error) -> Platform.runLater(() -> {
+            if (!name.equals(requested)) {
+                //Something else was asked for while this loaded
+                return;
+            }
+            if (error != null) {
+                logger.error("Unable to play music: {}", name, error);
+                fadeOutCurrent();
+                return;
+            }
+            if (current != null) {
+                fadeOut(current);
+            }
+            current = player;
+            currentName = name;
+            logger.info("Playing music: {}", name);
+            if (player.getStatus() != MediaPlayer.Status.PLAYING) {
+                player.setVolume(0);
+                player.seek(Duration.ZERO);
+                player.play();
+            }
+            fadeTo(player, volume, null);
+        }));
+    }
+
+    /**
+     * Fade out the current track
+     */
+    public static void stop() {
+        requested = null;
+        fadeOutCurrent();
+    }
+
+    /**
+     * Set the volume of the music
+     *
+     * @param volume from 0 to 1
+     */
+    public static void setVolume(double volume) {
+        Music.volume = volume;
+        if (current != null && !fades.containsKey(current)) {
+            current.setVolume(volume);
+        }
+    }
+
+    /**
+     * Stop and dispose of every track
+     */
+    public static void dispose() {
+        for (var fade : fades.values()) {
+            fade.stop();
+        }
+        fades.clear();
+        for (var track : tracks.values()) {
+            track.thenAccept(MediaPlayer::dispose);
+        }
+        tracks.clear();
+        current = null;
+        currentName = null;
+        requested = null;
+    }
+
+    /**
+     * Get a track, starting to load it if it isn't loading or ready already
+     *
+     * @param name the file name in /music
+     * @return the track once it is ready, or null if there is no such track
+     */
+    private static CompletableFuture<MediaPlayer> prepare(String name) {
+        var track = tracks.get(name);
+        if (track != null) {
+            return track;
+        }
+        var url = Music.class.getResource("/music/" + name);
+        if (url == null) {
+            logger.error("Music track missing: {}", name);
+            return null;
+        }
+
+        var ready = new CompletableFuture<MediaPlayer>();
+        loader.execute(() -> {
+            try {
+                var player = new MediaPlayer(new Media(url.toExternalForm()));
+                player.setCycleCount(MediaPlayer.INDEFINITE);
+                player.setOnReady(() -> ready.complete(player));
+                player.setOnError(() -> ready.completeExceptionally(player.getError()));
+            } catch (RuntimeException e) {
+                ready.completeExceptionally(e);
+            }
+        });
+        tracks.put(name, ready);
+        //Forget a track that fails, so it is tried again next time and doesn't take a place in the LRU
+        ready.whenComplete((player, error) -> {
+            if (error != null) {
+                Platform.runLater(() -> tracks.remove(name, ready));
+            }
+        });
+        evict();
+        return ready;
+    }
+
+    /**
+     * Dispose of the least recently used tracks beyond the ones kept ready, other than the one playing
+     */
+    private static void evict() {
+        var iterator = tracks.entrySet().iterator();
+        while (tracks.size() > WARM_TRACKS && iterator.hasNext()) {
+            var entry = iterator.next();
+            if (entry.getKey().equals(currentName) || entry.getKey().equals(requested)) {
+                continue;
+            }
+            iterator.remove();
+            entry.getValue().thenAccept(player -> Platform.runLater(() -> {
+                var fade = fades.remove(player);
+                if (fade != null) {
+                    fade.stop();
+                }
+                player.dispose();
+            }));
+            logger.info("Released music: {}", entry.getKey());
+        }
+    }
+
+    private static void fadeOutCurrent() {
+        if (current != null) {
+            fadeOut(current);
+            current = null;
+            currentName = null;
+        }
+    }
+
+    private static void fadeOut(MediaPlayer player) {
+        fadeTo(player, 0, player::stop);
+    }
+
+    /**
+     * Fade a player's volume, replacing any fade already running on it
+     *
+     * @param player the player
+     * @param target the volume to end at
+     * @param then   run at the end, or null
+     */
+    private static void fadeTo(MediaPlayer player, double target, Runnable then) {
+        var running = fades.remove(player);
+        if (running != null) {
+            running.stop();
+        }
+        var fade = new Timeline(new KeyFrame(CROSSFADE, new KeyValue(player.volumeProperty(), target)));
+        fade.setOnFinished(e -> {
+            fades.remove(player);
+            if (then != null) {
+                then.run();
+            }
+        });
+        fades.put(player, fade);
+        fade.play();
+    }
+
+}
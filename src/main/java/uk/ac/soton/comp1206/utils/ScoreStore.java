@@ -0,0 +1,518 @@
+package uk.ac.soton.comp1206.utils;
+
+import javafx.collections.ObservableList;
+import javafx.util.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The ScoreStore keeps every local score in a folder of the player's own, so saving a score never rewrites a file.
+ * <p>
+ * Each score is appended to a log as one record holding its length, the score, the name and a CRC32 of the lot, and
+ * the log is forced to disk before the append returns. If an append fails, the log is cut back to where it was, so
+ * later records never follow a broken one. When the log gets long, appends move on to a fresh log, and a background
+ * thread merges the old snapshot and the finished logs into a new snapshot, reading them from disk so saving is never
+ * held up. The snapshot is written to a temporary file and renamed over the old one, so there is always one whole
+ * snapshot on disk. It records which logs it covers, and those are deleted afterwards.
+ * <p>
+ * On opening, the snapshot is read and the logs it doesn't cover are replayed. A record cut short or damaged by a
+ * crash fails its checksum; the log is truncated back to the last good record and nothing before it is lost.
+ * <p>
+ * The store is in {@code ~/.tetrecs} unless the game is started with {@code -Dtetrecs.data=<folder>}. A new store is
+ * filled from the scores bundled in /history/scores. Can be used from any thread.
+ */
+public class ScoreStore implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(ScoreStore.class);
+
+    /**
+     * Records in the log before the scores are written to a new snapshot
+     */
+    private static final int COMPACT_AFTER = 256;
+
+    /**
+     * Longest name that can be stored, in bytes
+     */
+    public static final int MAX_NAME = 1024;
+
+    /**
+     * Bytes in a record besides the name: length, score and checksum
+     */
+    private static final int RECORD_OVERHEAD = 12;
+
+    private static final int SNAPSHOT_MAGIC = 0x54534331;
+
+    private static final String SNAPSHOT = "scores.snapshot";
+
+    private static final String LOG_PREFIX = "scores-";
+
+    private static final String LOG_SUFFIX = ".log";
+
+    private static ScoreStore instance;
+
+    private final Path folder;
+
+    /**
+     * Every score, in rank order
+     */
+    private final Leaderboard scores = new Leaderboard();
+
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(task -> {
+        var thread = new Thread(task, "Score compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The log being appended to, or null if scores are only kept in memory
+     */
+    private FileChannel log;
+
+    /**
+     * Number of the log being appended to. Logs are numbered in the order they were started.
+     */
+    private long generation;
+
+    /**
+     * Records in the logs not yet covered by a snapshot
+     */
+    private int logged;
+
+    private boolean compacting;
+
+    /**
+     * Open the store in a folder, creating it if need be
+     *
+     * @param folder the folder
+     * @throws IOException if the folder can't be read or written
+     */
+    public ScoreStore(Path folder) throws IOException {
+        this.folder = folder;
+        Files.createDirectories(folder);
+
+        long covered = -1;
+        var snapshot = folder.resolve(SNAPSHOT);
+        if (Files.exists(snapshot)) {
+            covered = readSnapshot(snapshot, scores);
+        }
+        //Left by a compaction that didn't finish
+        Files.deleteIfExists(folder.resolve(SNAPSHOT + ".tmp"));
+
+        var logs = listLogs();
+        boolean fresh = covered < 0 && logs.isEmpty();
+        generation = covered + 1;
+        for (var entry : logs.entrySet()) {
+            if (entry.getKey() <= covered) {
+                Files.delete(entry.getValue());
+                continue;
+            }
+            logged += replay(entry.getValue());
+            generation = entry.getKey();
+        }
+        log = openLog(generation);
+
+        if (fresh) {
+            importBundled();
+        }
+        logger.info("Opened {} scores in {}", scores.size(), folder);
+    }
+
+    /**
+     * A store that keeps scores in memory only, for when the folder can't be used
+     */
+    private ScoreStore() {
+        this.folder = null;
+    }
+
+    /**
+     * Get the store in the player's data folder, opening it the first time
+     *
+     * @return the store
+     */
+    public static synchronized ScoreStore getDefault() {
+        if (instance == null) {
+            var folder = Path.of(System.getProperty("tetrecs.data",
+                    Path.of(System.getProperty("user.home"), ".tetrecs").toString()));
+            try {
+                instance = new ScoreStore(folder);
+            } catch (IOException e) {
+                logger.error("Unable to open scores in {}, scores won't be saved", folder, e);
+                instance = new ScoreStore();
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Close the default store, if it was opened
+     */
+    public static synchronized void closeDefault() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    /**
+     * Save a score. Returns once the score is on disk.
+     *
+     * @param name  the player's name
+     * @param score the score
+     * @return the score's rank, 1 being the highest
+     */
+    public synchronized int add(String name, int score) {
+        var bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_NAME) {
+            throw new IllegalArgumentException("Name too long to store: " + bytes.length + " bytes");
+        }
+        int rank = scores.add(name, score);
+        if (log == null) {
+            return rank;
+        }
+        long end = -1;
+        try {
+            end = log.size();
+            var record = ByteBuffer.wrap(encode(bytes, score));
+            while (record.hasRemaining()) {
+                log.write(record);
+            }
+            log.force(false);
+        } catch (IOException e) {
+            logger.error("Unable to save score {} for {}", score, name, e);
+            discard(end);
+            return rank;
+        }
+        if (++logged >= COMPACT_AFTER && !compacting) {
+            compact();
+        }
+        return rank;
+    }
+
+    /**
+     * Get every score, highest first. Equal scores are in the order they were saved.
+     *
+     * @return a copy of the scores
+     */
+    public synchronized List<Pair<String, Integer>> getScores() {
+        return scores.head(scores.size());
+    }
+
+    /**
+     * Get the highest scores
+     *
+     * @param count the most to get
+     * @return a copy of up to that many scores, highest first
+     */
+    public synchronized List<Pair<String, Integer>> getTop(int count) {
+        return scores.head(count);
+    }
+
+    /**
+     * Get a list of the highest scores that stays up to date as scores are saved. It changes on the thread that saves
+     * a score, so only bind it to the UI if scores are saved on the JavaFX thread.
+     *
+     * @param count how many scores the list shows
+     * @return the scores, highest first
+     */
+    public synchronized ObservableList<Pair<String, Integer>> top(int count) {
+        return scores.top(count);
+    }
+
+    /**
+     * Find the rank a new score would get
+     *
+     * @param score the score
+     * @return the rank, 1 being the highest
+     */
+    public synchronized int rank(int score) {
+        return scores.rank(score);
+    }
+
+    /**
+     * Get the number of scores saved
+     *
+     * @return the count
+     */
+    public synchronized int size() {
+        return scores.size();
+    }
+
+    /**
+     * Wait for any compaction to finish, and close the log
+     */
+    @Override
+    public void close() {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (log != null) {
+                try {
+                    log.close();
+                } catch (IOException e) {
+                    logger.error("Unable to close the score log", e);
+                }
+                log = null;
+            }
+        }
+    }
+
+    /**
+     * Cut off whatever part of a record a failed append left in the log. If the log can't be cut, move on to a new
+     * one, so the next record doesn't follow the broken one and get lost with it when the log is replayed.
+     *
+     * @param end the size of the log before the append, or -1 if it couldn't be read
+     */
+    private void discard(long end) {
+        if (end >= 0) {
+            try {
+                log.truncate(end);
+                return;
+            } catch (IOException e) {
+                logger.error("Unable to cut the failed score from the log", e);
+            }
+        }
+        try {
+            log.close();
+            log = openLog(++generation);
+        } catch (IOException e) {
+            logger.error("Unable to start a new score log, scores won't be saved", e);
+            log = null;
+        }
+    }
+
+    /**
+     * Move appends on to a new log, and write a snapshot covering the old ones in the background
+     */
+    private void compact() {
+        long covers = generation;
+        try {
+            log.close();
+            log = openLog(++generation);
+        } catch (IOException e) {
+            logger.error("Unable to start a new score log", e);
+            return;
+        }
+        logged = 0;
+        compacting = true;
+        compactor.execute(() -> {
+            try {
+                int count = writeSnapshot(covers);
+                for (var entry : listLogs().headMap(covers, true).values()) {
+                    Files.delete(entry);
+                }
+                logger.info("Compacted {} scores", count);
+            } catch (IOException e) {
+                logger.error("Unable to compact scores", e);
+            } finally {
+                synchronized (this) {
+                    compacting = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Merge the snapshot and the logs up to one into a temporary file, highest first, and rename it over the snapshot.
+     * Those logs are no longer written to, so this reads only files and leaves the scores in memory alone.
+     *
+     * @param covers the newest log the snapshot includes
+     * @return the number of scores written
+     */
+    private int writeSnapshot(long covers) throws IOException {
+        var merged = new Leaderboard();
+        var snapshot = folder.resolve(SNAPSHOT);
+        if (Files.exists(snapshot)) {
+            readSnapshot(snapshot, merged);
+        }
+        for (var file : listLogs().headMap(covers, true).values()) {
+            readRecords(ByteBuffer.wrap(Files.readAllBytes(file)), merged::add);
+        }
+        var copy = merged.head(merged.size());
+
+        var temporary = folder.resolve(SNAPSHOT + ".tmp");
+        try (var channel = FileChannel.open(temporary, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(covers);
+            out.writeInt(copy.size());
+            for (var pair : copy) {
+                out.write(encode(pair.getKey().getBytes(StandardCharsets.UTF_8), pair.getValue()));
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE);
+        syncFolder();
+        return copy.size();
+    }
+
+    /**
+     * Read a snapshot
+     *
+     * @param into the scores to add it to
+     * @return the newest log the snapshot includes
+     */
+    private static long readSnapshot(Path snapshot, Leaderboard into) throws IOException {
+        var data = ByteBuffer.wrap(Files.readAllBytes(snapshot));
+        if (data.remaining() < 16 || data.getInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a scores snapshot: " + snapshot);
+        }
+        long covers = data.getLong();
+        int count = data.getInt();
+        int read = into.size();
+        readRecords(data, into::add);
+        if (into.size() - read != count) {
+            logger.error("Scores snapshot damaged, read {} of {} scores", into.size() - read, count);
+        }
+        return covers;
+    }
+
+    /**
+     * Read a log into the scores, cutting off anything after the last whole record
+     *
+     * @return the number of records read
+     */
+    private int replay(Path file) throws IOException {
+        var data = ByteBuffer.wrap(Files.readAllBytes(file));
+        int before = scores.size();
+        int end = readRecords(data, scores::add);
+        if (end < data.limit()) {
+            logger.warn("Dropping {} damaged bytes from the end of {}", data.limit() - end, file);
+            try (var channel = FileChannel.open(file, WRITE)) {
+                channel.truncate(end);
+                channel.force(true);
+            }
+        }
+        return scores.size() - before;
+    }
+
+    /**
+     * Read records from the buffer's position until the end, or until one is cut short or fails its checksum
+     *
+     * @param data    the records
+     * @param handler called with the name and score of each record
+     * @return the offset just after the last good record
+     */
+    private static int readRecords(ByteBuffer data, BiConsumer<String, Integer> handler) {
+        var crc = new CRC32();
+        int at = data.position();
+        while (at + RECORD_OVERHEAD <= data.limit()) {
+            int length = data.getInt(at);
+            if (length < 0 || length > MAX_NAME || at + RECORD_OVERHEAD + length > data.limit()) {
+                break;
+            }
+            crc.reset();
+            crc.update(data.array(), at, 8 + length);
+            if ((int) crc.getValue() != data.getInt(at + 8 + length)) {
+                break;
+            }
+            handler.accept(new String(data.array(), at + 8, length, StandardCharsets.UTF_8), data.getInt(at + 4));
+            at += RECORD_OVERHEAD + length;
+        }
+        return at;
+    }
+
+    /**
+     * Encode a record: name length, score, name, then a CRC32 of all of those
+     */
+    private static byte[] encode(byte[] name, int score) {
+        var buffer = ByteBuffer.allocate(RECORD_OVERHEAD + name.length);
+        buffer.putInt(name.length).putInt(score).put(name);
+        var crc = new CRC32();
+        crc.update(buffer.array(), 0, 8 + name.length);
+        buffer.putInt((int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * Find the logs in the folder
+     *
+     * @return each log by its number
+     */
+    private TreeMap<Long, Path> listLogs() throws IOException {
+        var logs = new TreeMap<Long, Path>();
+        try (var files = Files.list(folder)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                var name = file.getFileName().toString();
+                if (!name.startsWith(LOG_PREFIX) || !name.endsWith(LOG_SUFFIX)) continue;
+                try {
+                    logs.put(Long.parseLong(name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length())),
+                            file);
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring {}", file);
+                }
+            }
+        }
+        return logs;
+    }
+
+    private FileChannel openLog(long number) throws IOException {
+        var channel = FileChannel.open(folder.resolve(LOG_PREFIX + number + LOG_SUFFIX), CREATE, WRITE, APPEND);
+        syncFolder();
+        return channel;
+    }
+
+    /**
+     * Force the folder's entries to disk, so a rename or a new file survives a crash. Not possible everywhere.
+     */
+    private void syncFolder() {
+        try (var channel = FileChannel.open(folder, READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("Unable to sync {}", folder);
+        }
+    }
+
+    /**
+     * Fill a new store with the scores bundled with the game
+     */
+    private void importBundled() {
+        var in = ScoreStore.class.getResourceAsStream("/history/scores");
+        if (in == null) {
+            return;
+        }
+        try (var reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            //the line is player,score
+            String line;
+            while ((line = reader.readLine()) != null) {
+                var split = line.split(",");
+                if (split.length == 2) {
+                    add(split[0], Integer.parseInt(split[1].trim()));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            logger.error("Unable to import the bundled scores", e);
+        }
+    }
+
+}
@@ -0,0 +1,339 @@
+package uk.ac.soton.comp1206.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The SoftwareMixer plays sound effects through javax.sound.sampled instead of JavaFX media, for sounds that start
+ * within a few milliseconds.
+ * <p>
+ * Every effect is decoded once into 16-bit stereo samples at {@link #RATE}. A single mixer thread adds up the voices
+ * playing, applies each voice's gain and the master gain, and writes the result into one SourceDataLine. The line's
+ * buffer is kept small, and silence is written when nothing is playing, so a new sound only waits for the audio
+ * already buffered. Sounds are started by handing a command to the mixer thread through a queue, so playing never
+ * blocks the caller.
+ * <p>
+ * The time from a sound being asked for to the line reporting its first frame played is measured for each sound, and
+ * averaged in {@link #getLatency()}. The line's position is checked once per period, so a measurement can be up to a
+ * period late, and any delay in the device after the line isn't included.
+ */
+public class SoftwareMixer {
+
+    private static final Logger logger = LogManager.getLogger(SoftwareMixer.class);
+
+    /**
+     * Sample rate of the mix
+     */
+    public static final float RATE = 44100;
+
+    /**
+     * The most sounds that can play at once, across all effects
+     */
+    private static final int MAX_VOICES = 16;
+
+    private static final AudioFormat FORMAT = new AudioFormat(RATE, 16, 2, true, false);
+
+    /**
+     * A sound waiting to be started by the mixer thread
+     */
+    private record Start(short[] samples, float gain, int limit, long requested) {
+    }
+
+    /**
+     * A sound playing. Only used by the mixer thread.
+     */
+    private static final class Voice {
+        short[] samples;
+        int position;
+        float gain;
+        long started;
+        //When the sound was asked for, and the frame it starts at, until the line has played that frame
+        long requested;
+        long startFrame;
+        boolean timing;
+    }
+
+    /**
+     * Decoded effects, interleaved left and right
+     */
+    private final ConcurrentHashMap<String, short[]> effects = new ConcurrentHashMap<>();
+
+    private final ConcurrentLinkedQueue<Start> starts = new ConcurrentLinkedQueue<>();
+
+    private final Voice[] voices = new Voice[MAX_VOICES];
+
+    private final SourceDataLine line;
+
+    /**
+     * Frames mixed at a time
+     */
+    private final int period;
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    private volatile float master = 1;
+
+    /**
+     * Frames written to the line. Only used by the mixer thread.
+     */
+    private long written;
+
+    /**
+     * Average latency in nanoseconds, updated by the mixer thread
+     */
+    private volatile double latency;
+
+    /**
+     * Open the sound device and start mixing
+     *
+     * @param bufferFrames the size of the line's buffer in frames; smaller is quicker but may crackle
+     * @throws LineUnavailableException if the sound device can't be opened
+     */
+    public SoftwareMixer(int bufferFrames) throws LineUnavailableException {
+        for (int i = 0; i < MAX_VOICES; i++) {
+            voices[i] = new Voice();
+        }
+        line = AudioSystem.getSourceDataLine(FORMAT);
+        line.open(FORMAT, bufferFrames * FORMAT.getFrameSize());
+        //Mix half a buffer at a time, so one half plays while the next is mixed
+        period = Math.max(32, line.getBufferSize() / FORMAT.getFrameSize() / 2);
+        line.start();
+
+        thread = new Thread(this::run, "Audio mixer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+        logger.info("Mixing at {} Hz with a buffer of {} frames", RATE, line.getBufferSize() / FORMAT.getFrameSize());
+    }
+
+    /**
+     * Decode an effect, ready to be played
+     *
+     * @param name the name to play it by
+     * @param url  where the sound file is
+     * @throws IOException                   if it can't be read
+     * @throws UnsupportedAudioFileException if it isn't a sound file Java can decode
+     */
+    public void load(String name, URL url) throws IOException, UnsupportedAudioFileException {
+        if (effects.containsKey(name)) {
+            return;
+        }
+        try (var in = AudioSystem.getAudioInputStream(new BufferedInputStream(url.openStream()))) {
+            effects.put(name, decode(in));
+        }
+    }
+
+    /**
+     * Check whether an effect has been loaded
+     *
+     * @param name the name of the effect
+     * @return true if it can be played
+     */
+    public boolean has(String name) {
+        return effects.containsKey(name);
+    }
+
+    /**
+     * Play an effect. If it is already playing as often as the limit allows, the oldest of those is cut off.
+     *
+     * @param name  the name of the effect
+     * @param gain  the gain of this sound, from 0 to 1
+     * @param limit the most times this effect can play at once
+     */
+    public void play(String name, float gain, int limit) {
+        var samples = effects.get(name);
+        if (samples == null) {
+            logger.error("Sound effect not loaded: {}", name);
+            return;
+        }
+        starts.add(new Start(samples, gain, limit, System.nanoTime()));
+    }
+
+    /**
+     * Set the gain applied to the whole mix
+     *
+     * @param gain from 0 to 1
+     */
+    public void setMasterGain(float gain) {
+        master = gain;
+    }
+
+    /**
+     * Get the average time from a sound being played to the line playing its first frame
+     *
+     * @return latency in milliseconds
+     */
+    public double getLatency() {
+        return latency / 1e6;
+    }
+
+    /**
+     * Stop mixing and close the sound device
+     */
+    public void close() {
+        running = false;
+        //Stop the line and drop what it holds first, so a write the mixer thread is blocked in returns
+        line.stop();
+        line.flush();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        line.close();
+        logger.info("Closed mixer, average latency {} ms", String.format("%.1f", getLatency()));
+    }
+
+    /**
+     * The mixer thread: start any new sounds, mix a period and write it, which waits until the line has room
+     */
+    private void run() {
+        var mix = new float[period * 2];
+        var out = new byte[period * FORMAT.getFrameSize()];
+        while (running) {
+            startVoices();
+
+            Arrays.fill(mix, 0);
+            for (var voice : voices) {
+                if (voice.samples == null) continue;
+                int count = Math.min(mix.length, voice.samples.length - voice.position);
+                var samples = voice.samples;
+                int from = voice.position;
+                float gain = voice.gain;
+                for (int i = 0; i < count; i++) {
+                    mix[i] += samples[from + i] * gain;
+                }
+                voice.position += count;
+                if (voice.position >= samples.length) {
+                    voice.samples = null;
+                }
+            }
+
+            float gain = master;
+            for (int i = 0; i < mix.length; i++) {
+                int sample = Math.round(mix[i] * gain);
+                sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample));
+                out[i * 2] = (byte) sample;
+                out[i * 2 + 1] = (byte) (sample >> 8);
+            }
+            line.write(out, 0, out.length);
+            written += period;
+            measure();
+        }
+    }
+
+    /**
+     * Record the latency of each new sound whose first frame the line has now played
+     */
+    private void measure() {
+        long position = line.getLongFramePosition();
+        long now = System.nanoTime();
+        for (var voice : voices) {
+            if (voice.timing && position > voice.startFrame) {
+                voice.timing = false;
+                long heard = now - voice.requested;
+                latency = latency == 0 ? heard : latency * 0.9 + heard * 0.1;
+                logger.debug("Sound latency {} ms", String.format("%.1f", heard / 1e6));
+            }
+        }
+    }
+
+    /**
+     * Give each waiting sound a voice: a free one, else the oldest voice of the same effect if it is at its limit,
+     * else the oldest voice of all
+     */
+    private void startVoices() {
+        Start start;
+        while ((start = starts.poll()) != null) {
+            Voice free = null;
+            Voice oldestSame = null;
+            Voice oldest = null;
+            int same = 0;
+            for (var voice : voices) {
+                if (voice.samples == null) {
+                    if (free == null) free = voice;
+                    continue;
+                }
+                if (voice.samples == start.samples()) {
+                    same++;
+                    if (oldestSame == null || voice.started < oldestSame.started) oldestSame = voice;
+                }
+                if (oldest == null || voice.started < oldest.started) oldest = voice;
+            }
+            var voice = same >= start.limit() ? oldestSame : free != null ? free : oldest;
+            voice.samples = start.samples();
+            voice.position = 0;
+            voice.gain = start.gain();
+
+            voice.started = System.nanoTime();
+            //Its first frame goes into the next period written
+            voice.requested = start.requested();
+            voice.startFrame = written;
+            voice.timing = true;
+        }
+    }
+
+    /**
+     * Decode a sound into 16-bit stereo samples at the mixer's rate
+     *
+     * @param in the sound
+     * @return the samples, left and right interleaved
+     * @throws IOException if it can't be read
+     */
+    private static short[] decode(AudioInputStream in) throws IOException {
+        var source = in.getFormat();
+        var pcm = new AudioFormat(source.getSampleRate(), 16, source.getChannels(), true, false);
+        try (var converted = AudioSystem.getAudioInputStream(pcm, in)) {
+            var bytes = converted.readAllBytes();
+            int channels = pcm.getChannels();
+            int frames = bytes.length / (2 * channels);
+
+            //Take the first two channels, or copy a single channel to both
+            var stereo = new short[frames * 2];
+            for (int frame = 0; frame < frames; frame++) {
+                int base = frame * channels * 2;
+                short left = (short) ((bytes[base] & 0xFF) | (bytes[base + 1] << 8));
+                short right = channels > 1 ? (short) ((bytes[base + 2] & 0xFF) | (bytes[base + 3] << 8)) : left;
+                stereo[frame * 2] = left;
+                stereo[frame * 2 + 1] = right;
+            }
+            return source.getSampleRate() == RATE ? stereo : resample(stereo, source.getSampleRate());
+        }
+    }
+
+    /**
+     * Change the rate of stereo samples to the mixer's rate by linear interpolation
+     */
+    private static short[] resample(short[] stereo, float rate) {
+        int frames = stereo.length / 2;
+        int outFrames = (int) ((long) frames * RATE / rate);
+        var out = new short[outFrames * 2];
+        double step = rate / RATE;
+        for (int frame = 0; frame < outFrames; frame++) {
+            double at = frame * step;
+            int i = (int) at;
+            double t = at - i;
+            int next = Math.min(i + 1, frames - 1);
+            for (int c = 0; c < 2; c++) {
+                out[frame * 2 + c] = (short) Math.round(stereo[i * 2 + c] * (1 - t) + stereo[next * 2 + c] * t);
+            }
+        }
+        return out;
+    }
+
+}
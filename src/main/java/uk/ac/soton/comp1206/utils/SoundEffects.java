@@ -0,0 +1,308 @@
+package uk.ac.soton.comp1206.utils;
+
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+import javafx.util.Duration;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SoundEffects holds a small pool of players for each sound effect, loaded once and reused.
+ * <p>
+ * Each effect can play a few times over itself, up to {@link #VOICES} at once. When all its players are busy the one
+ * that started first is restarted, so holding down a key can't pile up sounds. The effects in /sounds are loaded when
+ * the game starts; any other effect is loaded the first time it is played. Only used on the JavaFX thread.
+ * <p>
+ * Effects are played with JavaFX media unless the game is started with {@code -Dtetrecs.mixer=true}, in which case
+ * they are decoded up front and played through a {@link SoftwareMixer} for much lower latency. The mixer's buffer can
+ * be set in frames with {@code -Dtetrecs.mixer.buffer}. If the sound device can't be opened, JavaFX media is used.
+ */
+public class SoundEffects {
+
+    private static final Logger logger = LogManager.getLogger(SoundEffects.class);
+
+    /**
+     * The most times one effect can be playing at once
+     */
+    public static final int VOICES = 3;
+
+    /**
+     * Default size of the mixer's buffer in frames, about 12ms
+     */
+    private static final int MIXER_BUFFER = 512;
+
+    /**
+     * The players for one effect
+     */
+    private static final class Effect {
+        final Media media;
+        final MediaPlayer[] players = new MediaPlayer[VOICES];
+        final boolean[] busy = new boolean[VOICES];
+        final long[] started = new long[VOICES];
+        //Each player's gain, which the volume is multiplied by
+        final double[] gains = new double[VOICES];
+
+        Effect(Media media) {
+            this.media = media;
+        }
+
+        void play(double volume, double gain) {
+            int voice = pick();
+            var player = players[voice];
+            if (player == null) {
+                player = players[voice] = createPlayer(voice);
+            }
+            busy[voice] = true;
+            started[voice] = System.nanoTime();
+            gains[voice] = gain;
+            player.setVolume(volume * gain);
+            player.seek(Duration.ZERO);
+            player.play();
+        }
+
+        /**
+         * Find a free player, or the one that has been playing longest
+         */
+        private int pick() {
+            int oldest = 0;
+            for (int voice = 0; voice < VOICES; voice++) {
+                if (!busy[voice]) {
+                    return voice;
+                }
+                if (started[voice] < started[oldest]) {
+                    oldest = voice;
+                }
+            }
+            return oldest;
+        }
+
+        private MediaPlayer createPlayer(int voice) {
+            var player = new MediaPlayer(media);
+            player.setOnEndOfMedia(() -> {
+                player.stop();
+                busy[voice] = false;
+            });
+            player.setOnError(() -> {
+                logger.error("Sound effect failed: {}", media.getSource(), player.getError());
+                busy[voice] = false;
+            });
+            return player;
+        }
+
+        void setVolume(double volume) {
+            for (int voice = 0; voice < VOICES; voice++) {
+                if (players[voice] != null) {
+                    players[voice].setVolume(volume * gains[voice]);
+                }
+            }
+        }
+
+        void dispose() {
+            for (int voice = 0; voice < VOICES; voice++) {
+                if (players[voice] != null) {
+                    players[voice].dispose();
+                    players[voice] = null;
+                }
+                busy[voice] = false;
+            }
+        }
+    }
+
+    private static final Map<String, Effect> effects = new HashMap<>();
+
+    private static double volume = 1;
+
+    /**
+     * The software mixer, if it is being used instead of JavaFX media
+     */
+    private static SoftwareMixer mixer;
+
+    /**
+     * Load every effect in /sounds, and get one player of each ready, so the first play of each is quick
+     */
+    public static void preload() {
+        if (Boolean.getBoolean("tetrecs.mixer") && mixer == null) {
+            try {
+                mixer = new SoftwareMixer(Integer.getInteger("tetrecs.mixer.buffer", MIXER_BUFFER));
+                mixer.setMasterGain((float) volume);
+            } catch (LineUnavailableException | IllegalArgumentException e) {
+                logger.error("Unable to open the software mixer, using JavaFX media", e);
+            }
+        }
+
+        var url = SoundEffects.class.getResource("/sounds/");
+        if (url == null) {
+            logger.warn("No sounds folder to preload");
+            return;
+        }
+        try {
+            var uri = url.toURI();
+            if ("jar".equals(uri.getScheme())) {
+                FileSystem jar;
+                try {
+                    jar = FileSystems.newFileSystem(uri, Map.of());
+                } catch (FileSystemAlreadyExistsException e) {
+                    //Something else has the jar open already, so borrow its file system and leave it open
+                    preload(FileSystems.getFileSystem(uri).getPath("/sounds/"));
+                    return;
+                }
+                try (jar) {
+                    preload(jar.getPath("/sounds/"));
+                }
+            } else {
+                preload(Path.of(uri));
+            }
+        } catch (IOException | URISyntaxException | FileSystemNotFoundException | IllegalArgumentException e) {
+            logger.error("Unable to preload sound effects", e);
+        }
+    }
+
+    private static void preload(Path folder) throws IOException {
+        try (var files = Files.list(folder)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(".wav"))
+                    .forEach(SoundEffects::preloadEffect);
+        }
+        logger.info("Preloaded {} sound effects", effects.size());
+    }
+
+    private static void preloadEffect(String name) {
+        if (mixer != null) {
+            decode(name);
+            return;
+        }
+        var effect = load(name);
+        if (effect != null && effect.players[0] == null) {
+            effect.players[0] = effect.createPlayer(0);
+        }
+    }
+
+    /**
+     * Play a sound effect from /sounds
+     *
+     * @param name the file name
+     */
+    public static void play(String name) {
+        play(name, 1);
+    }
+
+    /**
+     * Play a sound effect from /sounds, quieter than the others
+     *
+     * @param name the file name
+     * @param gain the gain of this sound, from 0 to 1, on top of the volume
+     */
+    public static void play(String name, double gain) {
+        if (mixer != null) {
+            if (mixer.has(name) || decode(name)) {
+                mixer.play(name, (float) gain, VOICES);
+            }
+            return;
+        }
+        var effect = load(name);
+        if (effect != null) {
+            effect.play(volume, gain);
+        }
+    }
+
+    /**
+     * Set the volume of every effect, including ones playing now
+     *
+     * @param volume the volume, from 0 to 1
+     */
+    public static void setVolume(double volume) {
+        SoundEffects.volume = volume;
+        if (mixer != null) {
+            mixer.setMasterGain((float) volume);
+        }
+        for (var effect : effects.values()) {
+            effect.setVolume(volume);
+        }
+    }
+
+    /**
+     * Dispose of every player. Effects played afterwards are loaded again.
+     */
+    public static void dispose() {
+        for (var effect : effects.values()) {
+            effect.dispose();
+        }
+        effects.clear();
+        if (mixer != null) {
+            mixer.close();
+            mixer = null;
+        }
+        logger.info("Disposed of sound effects");
+    }
+
+    /**
+     * Decode an effect into the software mixer
+     *
+     * @param name the file name
+     * @return true if it was decoded
+     */
+    private static boolean decode(String name) {
+        var url = SoundEffects.class.getResource("/sounds/" + name);
+        if (url == null) {
+            logger.error("No such sound effect: {}", name);
+            return false;
+        }
+        try {
+            mixer.load(name, url);
+            return true;
+        } catch (IOException | UnsupportedAudioFileException e) {
+            logger.error("Unable to decode sound effect: {}", name, e);
+            return false;
+        }
+    }
+
+    /**
+     * Get the average latency of the software mixer
+     *
+     * @return latency in milliseconds, or NaN if the mixer isn't being used
+     */
+    public static double getMixerLatency() {
+        return mixer == null ? Double.NaN : mixer.getLatency();
+    }
+
+    /**
+     * Get an effect, loading it if it hasn't been already
+     *
+     * @param name the file name
+     * @return the effect, or null if it can't be loaded
+     */
+    private static Effect load(String name) {
+        var effect = effects.get(name);
+        if (effect != null) {
+            return effect;
+        }
+        var url = SoundEffects.class.getResource("/sounds/" + name);
+        if (url == null) {
+            logger.error("No such sound effect: {}", name);
+            return null;
+        }
+        try {
+            logger.info("Loading sound effect: {}", url);
+            effect = new Effect(new Media(url.toExternalForm()));
+        } catch (RuntimeException e) {
+            logger.error("Unable to load sound effect: {}", name, e);
+            return null;
+        }
+        effects.put(name, effect);
+        return effect;
+    }
+
+}
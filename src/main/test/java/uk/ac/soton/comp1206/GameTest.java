@@ -3,26 +3,41 @@ package uk.ac.soton.comp1206;
 
 import javafx.util.Pair;
 import org.junit.jupiter.api.Test;
-import uk.ac.soton.comp1206.scene.ScoresScene;
+import org.junit.jupiter.api.io.TempDir;
+import uk.ac.soton.comp1206.utils.ScoreStore;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class GameTest {
 
+    //the scores are kept in a temporary folder, so the player's own are left alone
+    @TempDir
+    Path folder;
+
     @Test
-    public void testReadFile() {
-        ScoresScene scoresScene = new ScoresScene(null);
-        ArrayList<Pair<String, Integer>> pairs = scoresScene.loadScores();
-        //print the scores
-        for (Pair<String, Integer> pair : pairs) {
-            System.out.println(pair.getKey() + " " + pair.getValue());
+    public void testReadFile() throws IOException {
+        try (var store = new ScoreStore(folder)) {
+            store.add("low", 10);
+            store.add("high", 300);
+        }
+        try (var store = new ScoreStore(folder)) {
+            var pairs = store.getScores();
+            assertTrue(pairs.indexOf(new Pair<>("high", 300)) >= 0);
+            assertTrue(pairs.indexOf(new Pair<>("high", 300)) < pairs.indexOf(new Pair<>("low", 10)));
         }
     }
-    @Test void testWriteFile(){
-        ScoresScene scoresScene = new ScoresScene(null);
-        ArrayList<Pair<String, Integer>> pairs = new ArrayList<>();
-        pairs.add(new Pair<>("test", 100));
-        scoresScene.writeScores(pairs);
+
+    @Test
+    void testWriteFile() throws IOException {
+        try (var store = new ScoreStore(folder)) {
+            store.add("test", 100);
+        }
+        try (var store = new ScoreStore(folder)) {
+            assertTrue(store.getScores().contains(new Pair<>("test", 100)));
+        }
     }
 
 
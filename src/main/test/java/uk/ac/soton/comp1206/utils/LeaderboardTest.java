@@ -0,0 +1,87 @@
+package uk.ac.soton.comp1206.utils;
+
+import javafx.util.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests a Leaderboard against a plain list kept in rank order
+ */
+public class LeaderboardTest {
+
+    @Test
+    public void equalScoresRankInTheOrderAdded() {
+        var board = new Leaderboard();
+        assertEquals(1, board.add("a", 100));
+        assertEquals(2, board.add("b", 100));
+        assertEquals(1, board.add("c", 200));
+        assertEquals(4, board.add("d", 100));
+        assertEquals(5, board.rank(100));
+        assertEquals(List.of(new Pair<>("c", 200), new Pair<>("a", 100), new Pair<>("b", 100), new Pair<>("d", 100)),
+                board.head(10));
+    }
+
+    @Test
+    public void matchesSortedList() {
+        var random = new Random(1206);
+        var board = new Leaderboard();
+        var reference = new ArrayList<Pair<String, Integer>>();
+        var top = board.top(10);
+        //a view asked for once there are already scores
+        List<Pair<String, Integer>> late = null;
+
+        for (int i = 0; i < 5000; i++) {
+            //a narrow range of scores, so there are plenty of ties
+            int score = random.nextInt(200) * 10;
+            var name = "Player" + i;
+            int expected = rank(reference, score);
+            assertEquals(expected, board.rank(score));
+            assertEquals(expected, board.add(name, score));
+            reference.add(expected - 1, new Pair<>(name, score));
+
+            assertEquals(reference.size(), board.size());
+            assertEquals(reference.subList(0, Math.min(10, reference.size())), top);
+            if (i == 100) {
+                late = board.top(3);
+            }
+            if (late != null) {
+                assertEquals(reference.subList(0, 3), late);
+            }
+        }
+
+        for (int rank = 1; rank <= reference.size(); rank++) {
+            assertEquals(reference.get(rank - 1), board.get(rank));
+        }
+        assertEquals(reference, board.head(reference.size()));
+        assertEquals(reference.subList(0, 50), board.head(50));
+        assertSame(top, board.top(10));
+    }
+
+    @Test
+    public void outOfRangeRanksAreRejected() {
+        var board = new Leaderboard();
+        board.add("only", 10);
+        assertThrows(IndexOutOfBoundsException.class, () -> board.get(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> board.get(2));
+        assertThrows(UnsupportedOperationException.class, () -> board.top(5).clear());
+    }
+
+    /**
+     * The rank a score gets in a list in rank order: after every score at least as high
+     */
+    private static int rank(List<Pair<String, Integer>> reference, int score) {
+        int rank = 1;
+        while (rank <= reference.size() && reference.get(rank - 1).getValue() >= score) {
+            rank++;
+        }
+        return rank;
+    }
+
+}
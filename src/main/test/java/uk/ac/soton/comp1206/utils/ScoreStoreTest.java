@@ -0,0 +1,109 @@
+package uk.ac.soton.comp1206.utils;
+
+import javafx.util.Pair;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that scores saved to a ScoreStore come back the same when it is opened again, whatever state the folder was
+ * left in
+ */
+public class ScoreStoreTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    public void reopenKeepsScoresInOrder() throws IOException {
+        List<Pair<String, Integer>> saved;
+        try (var store = new ScoreStore(folder)) {
+            store.add("first", 500);
+            store.add("second", 200);
+            store.add("third", 500);
+            store.add("fourth", 800);
+            saved = store.getScores();
+        }
+        try (var store = new ScoreStore(folder)) {
+            assertEquals(saved, store.getScores());
+        }
+        //equal scores stay in the order they were saved
+        assertTrue(saved.indexOf(new Pair<>("fourth", 800)) < saved.indexOf(new Pair<>("first", 500)));
+        assertTrue(saved.indexOf(new Pair<>("first", 500)) < saved.indexOf(new Pair<>("third", 500)));
+        assertTrue(saved.indexOf(new Pair<>("third", 500)) < saved.indexOf(new Pair<>("second", 200)));
+    }
+
+    @Test
+    public void compactionWritesSnapshotAndDropsOldLogs() throws IOException {
+        List<Pair<String, Integer>> saved;
+        try (var store = new ScoreStore(folder)) {
+            for (int i = 0; i < 1000; i++) {
+                store.add("Player" + i, i % 37 * 10);
+            }
+            saved = store.getScores();
+        }
+        assertTrue(Files.exists(folder.resolve("scores.snapshot")));
+        assertTrue(logs().size() <= 2, "old logs left: " + logs());
+        try (var store = new ScoreStore(folder)) {
+            assertEquals(saved, store.getScores());
+        }
+    }
+
+    @Test
+    public void tornTailIsCutOff() throws IOException {
+        List<Pair<String, Integer>> saved;
+        try (var store = new ScoreStore(folder)) {
+            store.add("kept", 100);
+            store.add("also kept", 50);
+            saved = store.getScores();
+        }
+        var log = logs().get(logs().size() - 1);
+        long size = Files.size(log);
+        //the start of a record that was cut short by a crash
+        Files.write(log, new byte[]{0, 0, 0, 4, 0, 0, 1}, StandardOpenOption.APPEND);
+
+        try (var store = new ScoreStore(folder)) {
+            assertEquals(saved, store.getScores());
+            assertEquals(size, Files.size(log));
+            store.add("after", 75);
+        }
+        try (var store = new ScoreStore(folder)) {
+            var scores = store.getScores();
+            assertEquals(saved.size() + 1, scores.size());
+            assertTrue(scores.indexOf(new Pair<>("kept", 100)) < scores.indexOf(new Pair<>("after", 75)));
+            assertTrue(scores.indexOf(new Pair<>("after", 75)) < scores.indexOf(new Pair<>("also kept", 50)));
+        }
+    }
+
+    @Test
+    public void leftoverTemporarySnapshotIsIgnored() throws IOException {
+        List<Pair<String, Integer>> saved;
+        try (var store = new ScoreStore(folder)) {
+            store.add("kept", 100);
+            saved = store.getScores();
+        }
+        var temporary = folder.resolve("scores.snapshot.tmp");
+        Files.write(temporary, new byte[]{1, 2, 3});
+
+        try (var store = new ScoreStore(folder)) {
+            assertEquals(saved, store.getScores());
+        }
+        assertFalse(Files.exists(temporary));
+    }
+
+    private List<Path> logs() throws IOException {
+        try (var files = Files.list(folder)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+}